@@ -1,7 +1,10 @@
 package com.yebitir.controller;
 
+import com.yebitir.dto.CursorPage;
 import com.yebitir.dto.MessageResponse;
 import com.yebitir.dto.RecipeDTO;
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
 import com.yebitir.dto.UserDTO;
 import com.yebitir.dto.AdminCommentDTO;
 import com.yebitir.exception.ResourceNotFoundException;
@@ -11,6 +14,7 @@ import com.yebitir.model.Comment;
 import com.yebitir.service.RecipeService;
 import com.yebitir.service.UserService;
 import com.yebitir.service.CommentService;
+import com.yebitir.util.RecipeCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -71,12 +75,17 @@ public class AdminController {
     }
 
     @GetMapping("/recipes")
-    public ResponseEntity<List<RecipeDTO>> getAllRecipes() {
-        List<Recipe> recipes = recipeService.getAllRecipes();
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<?> getAllRecipes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePage(new RecipeFilterDTO(), null, cursor, limit,
+                    includeTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
     @DeleteMapping("/users/{userId}")
@@ -3,15 +3,19 @@ package com.yebitir.controller;
 import com.yebitir.dto.JwtResponse;
 import com.yebitir.dto.LoginRequest;
 import com.yebitir.dto.MessageResponse;
+import com.yebitir.dto.RefreshTokenRequest;
 import com.yebitir.dto.SignupRequest;
 import com.yebitir.exception.EmailAlreadyExistsException;
+import com.yebitir.exception.TooManyRequestsException;
 import com.yebitir.exception.UsernameAlreadyExistsException;
 import com.yebitir.model.User;
-import com.yebitir.security.jwt.JwtUtils;
+import com.yebitir.security.services.UserDetailsImpl;
+import com.yebitir.service.AuthTokenService;
 import com.yebitir.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,13 +27,14 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
-    private final JwtUtils jwtUtils;
+    private final AuthTokenService authTokenService;
 
     @Autowired
-    public AuthController(AuthenticationManager authenticationManager, UserService userService, JwtUtils jwtUtils) {
+    public AuthController(AuthenticationManager authenticationManager, UserService userService,
+            AuthTokenService authTokenService) {
         this.authenticationManager = authenticationManager;
         this.userService = userService;
-        this.jwtUtils = jwtUtils;
+        this.authTokenService = authTokenService;
     }
 
     @GetMapping("/health")
@@ -39,16 +44,39 @@ public class AuthController {
 
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        } catch (DisabledException e) {
+            return ResponseEntity.status(403).body(new MessageResponse("This account has been deactivated"));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429).body(new MessageResponse(e.getMessage()));
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
 
         // Get the authenticated user details
-        User user = userService.getUserByEmail(loginRequest.getEmail());
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        User user = userService.getUserById(principal.getId());
+
+        return ResponseEntity.ok(authTokenService.issueTokens(user));
+    }
 
-        return ResponseEntity.ok(new JwtResponse(jwt, user));
+    @PostMapping("/refresh")
+    public ResponseEntity<JwtResponse> refreshToken(@RequestBody RefreshTokenRequest request) {
+        return ResponseEntity.ok(authTokenService.refresh(request.getRefreshToken()));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<MessageResponse> logout(
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7)
+                : null;
+        authTokenService.revoke(accessToken, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully"));
     }
 
     @PostMapping("/signup")
@@ -60,10 +88,8 @@ public class AuthController {
                     signupRequest.getPassword(),
                     signupRequest.getBio());
 
-            // Generate token for the new user
-            String jwt = jwtUtils.generateJwtToken(user.getUsername());
-
-            return ResponseEntity.ok(new JwtResponse(jwt, user));
+            // Generate tokens for the new user
+            return ResponseEntity.ok(authTokenService.issueTokens(user));
 
         } catch (UsernameAlreadyExistsException e) {
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
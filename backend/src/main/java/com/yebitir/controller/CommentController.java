@@ -1,6 +1,7 @@
 package com.yebitir.controller;
 
 import com.yebitir.dto.CommentDTO;
+import com.yebitir.dto.CommentReactionDTO;
 import com.yebitir.dto.CommentRequest;
 import com.yebitir.dto.MessageResponse;
 import com.yebitir.exception.ResourceNotFoundException;
@@ -71,9 +72,13 @@ public class CommentController {
     public ResponseEntity<?> updateComment(
             @PathVariable Long commentId,
             @RequestParam String text,
+            @RequestParam(required = false) Float rating,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
         try {
-            Comment comment = commentService.updateComment(commentId, userDetails.getId(), text);
+            if (rating != null && (rating < 1 || rating > 5)) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Rating must be between 1 and 5"));
+            }
+            Comment comment = commentService.updateComment(commentId, userDetails.getId(), text, rating);
             return ResponseEntity.ok(new CommentDTO(comment));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
@@ -103,8 +108,8 @@ public class CommentController {
             @PathVariable Long commentId,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
         try {
-            Comment comment = commentService.likeComment(commentId, userDetails.getId());
-            return ResponseEntity.ok(new CommentDTO(comment));
+            CommentReactionDTO counts = commentService.likeComment(commentId, userDetails.getId());
+            return ResponseEntity.ok(counts);
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
         }
@@ -116,8 +121,8 @@ public class CommentController {
             @PathVariable Long commentId,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
         try {
-            Comment comment = commentService.dislikeComment(commentId, userDetails.getId());
-            return ResponseEntity.ok(new CommentDTO(comment));
+            CommentReactionDTO counts = commentService.dislikeComment(commentId, userDetails.getId());
+            return ResponseEntity.ok(counts);
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
         }
@@ -1,21 +1,42 @@
 package com.yebitir.controller;
 
+import com.yebitir.util.FileSpooler;
+import com.yebitir.util.ImageTypeSniffer;
+import com.yebitir.util.ImageTypeSniffer.ImageType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/files")
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class FileUploadController {
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     @Value("${file.upload-dir}")
     private String uploadDir;
@@ -29,14 +50,23 @@ public class FileUploadController {
                 directory.mkdirs();
             }
 
-            // Generate a unique filename
-            String originalFileName = file.getOriginalFilename();
-            String extension = originalFileName.substring(originalFileName.lastIndexOf("."));
-            String newFileName = UUID.randomUUID().toString() + extension;
+            // Stream the file next to its final location, then move it into place
+            Path tempFile;
+            try (InputStream in = file.getInputStream()) {
+                tempFile = FileSpooler.spool(in, directory.toPath());
+            }
+
+            // The extension comes from the content, so it also determines the served content type
+            Optional<ImageType> imageType = ImageTypeSniffer.sniff(tempFile);
+            if (imageType.isEmpty()) {
+                Files.deleteIfExists(tempFile);
+                return ResponseEntity.badRequest().body("Only JPEG, PNG, GIF and WebP images can be uploaded");
+            }
 
-            // Save the file
+            // Generate a unique filename
+            String newFileName = UUID.randomUUID().toString() + imageType.get().getExtension();
             Path filePath = Paths.get(uploadDir, newFileName);
-            Files.write(filePath, file.getBytes());
+            Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
 
             // Return the file URL
             return ResponseEntity.ok("/api/files/" + newFileName);
@@ -46,15 +76,55 @@ public class FileUploadController {
     }
 
     @GetMapping("/{fileName}")
-    public ResponseEntity<byte[]> getFile(@PathVariable String fileName) {
+    public ResponseEntity<Resource> getFile(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            Path filePath = Paths.get(uploadDir, fileName);
-            byte[] fileContent = Files.readAllBytes(filePath);
+            Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+            Path filePath = root.resolve(fileName).normalize();
+            if (!filePath.getParent().equals(root) || !Files.isRegularFile(filePath)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // Uploaded files are never rewritten, so size and mtime identify a version
+            FileSystemResource resource = new FileSystemResource(filePath);
+            long size = resource.contentLength();
+            long lastModified = resource.lastModified();
+            String eTag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+            MediaType contentType = MediaTypeFactory.getMediaType(resource)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM);
+            CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+            // Whole files are handed to Tomcat, which sends them with sendfile
+            // straight from the page cache without copying them through the JVM
+            if (canSendfile(request)) {
+                if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+                    return null;
+                }
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+                response.setContentType(contentType.toString());
+                response.setContentLengthLong(size);
+                request.setAttribute(SENDFILE_FILENAME, filePath.toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return null;
+            }
+
+            // Otherwise Spring answers conditional and Range requests and
+            // streams the body from disk
             return ResponseEntity.ok()
-                    .header("Content-Type", "image/jpeg")
-                    .body(fileContent);
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .cacheControl(cacheControl)
+                    .contentType(contentType)
+                    .body(resource);
         } catch (IOException e) {
             return ResponseEntity.notFound().build();
         }
     }
+
+    private static boolean canSendfile(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+    }
 }
\ No newline at end of file
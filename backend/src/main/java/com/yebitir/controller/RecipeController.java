@@ -1,32 +1,40 @@
 package com.yebitir.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yebitir.dto.CursorPage;
 import com.yebitir.dto.MessageResponse;
+import com.yebitir.dto.PantryMatchDTO;
 import com.yebitir.dto.RecipeDTO;
 import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.dto.SuggestionDTO;
 import com.yebitir.exception.ResourceNotFoundException;
+import com.yebitir.exception.InvalidImageException;
+import com.yebitir.exception.TooManyRequestsException;
 import com.yebitir.exception.UnauthorizedException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.Recipe;
+import com.yebitir.search.FacetCounts;
 import com.yebitir.security.services.UserDetailsImpl;
 import com.yebitir.service.RecipeService;
+import com.yebitir.service.StoredImage;
+import com.yebitir.util.FileSpooler;
+import com.yebitir.util.ImageResponses;
+import com.yebitir.util.RecipeCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -53,12 +61,17 @@ public class RecipeController {
             @RequestParam(required = false) String mealType,
             @RequestParam(required = false) String diet,
             @RequestParam(required = false) String mainIngredient,
-            @RequestParam(required = false) Integer servings) {
+            @RequestParam(required = false) Integer servings,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
-            List<Recipe> recipes = recipeService.getRecipes(query, minRating, maxCookingTime, cuisine, mealType, diet, mainIngredient, servings);
-            // Filter out inactive recipes
-            recipes = recipes.stream().filter(Recipe::getActive).collect(Collectors.toList());
-            return ResponseEntity.ok(recipes.stream().map(RecipeDTO::new).collect(Collectors.toList()));
+            RecipeFilterDTO filterDTO = new RecipeFilterDTO(query, minRating, maxCookingTime, cuisine, mealType, diet,
+                    mainIngredient, servings, sort);
+            // Only published recipes are listed publicly
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePage(filterDTO, true, cursor, limit, includeTotal);
+            return ResponseEntity.ok(page);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new MessageResponse("Failed to get recipes: " + e.getMessage()));
         }
@@ -74,6 +87,25 @@ public class RecipeController {
         }
     }
 
+    @GetMapping("/{id}/image")
+    public ResponseEntity<Resource> getRecipeImage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        try {
+            ImageVariant variant = ImageVariant.fromParameter(size);
+            ImageFormat format = ImageFormat.fromAcceptHeader(accept);
+            Recipe recipe = recipeService.getRecipeById(id);
+            StoredImage image = recipeService.getRecipeImage(recipe, variant, format);
+            return ImageResponses.immutableImage(recipe.getImageHash(), variant, version, image);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @PostMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> createRecipe(
@@ -85,7 +117,7 @@ public class RecipeController {
             RecipeDTO recipeDTO = objectMapper.readValue(recipeJson, RecipeDTO.class);
 
             // Process image if present
-            byte[] imageBytes = null;
+            Path imageFile = null;
             if (image != null && !image.isEmpty()) {
                 // Validate file type
                 String contentType = image.getContentType();
@@ -98,8 +130,7 @@ public class RecipeController {
                     return ResponseEntity.badRequest().body(new MessageResponse("File size should not exceed 5MB"));
                 }
 
-                // Compress image
-                imageBytes = compressImage(image.getBytes());
+                imageFile = FileSpooler.spool(image);
             }
 
             // Initialize empty lists if they are null
@@ -110,10 +141,14 @@ public class RecipeController {
                 recipeDTO.setInstructions(new ArrayList<>());
             }
 
-            Recipe recipe = recipeService.createRecipe(userDetails.getId(), recipeDTO, imageBytes);
+            Recipe recipe = recipeService.createRecipe(userDetails.getId(), recipeDTO, imageFile);
             return ResponseEntity.ok(new RecipeDTO(recipe));
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(new MessageResponse("Failed to process image: " + e.getMessage()));
+        } catch (InvalidImageException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429).body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(new MessageResponse("An error occurred: " + e.getMessage()));
@@ -128,7 +163,7 @@ public class RecipeController {
             @RequestPart("recipe") RecipeDTO recipeDTO,
             @RequestPart(value = "image", required = false) MultipartFile image) {
         try {
-            byte[] imageBytes = null;
+            Path imageFile = null;
             if (image != null && !image.isEmpty()) {
                 // Validate file type
                 String contentType = image.getContentType();
@@ -141,55 +176,23 @@ public class RecipeController {
                     return ResponseEntity.badRequest().body(new MessageResponse("File size should not exceed 5MB"));
                 }
 
-                // Compress image
-                imageBytes = compressImage(image.getBytes());
+                imageFile = FileSpooler.spool(image);
             }
 
-            Recipe recipe = recipeService.updateRecipe(id, userDetails.getId(), recipeDTO, imageBytes);
+            Recipe recipe = recipeService.updateRecipe(id, userDetails.getId(), recipeDTO, imageFile);
             return ResponseEntity.ok(new RecipeDTO(recipe));
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(new MessageResponse("Failed to process image: " + e.getMessage()));
+        } catch (InvalidImageException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429).body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(new MessageResponse("An error occurred: " + e.getMessage()));
         }
     }
 
-    private byte[] compressImage(byte[] imageBytes) throws IOException {
-        // Read the image
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-        if (image == null) {
-            throw new IOException("Failed to read image data");
-        }
-
-        // Create output stream to store compressed image
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Get image writers for JPEG format
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) {
-            throw new IOException("No image writer found");
-        }
-
-        ImageWriter writer = writers.next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-
-        // Set compression quality (0.7 for better quality while maintaining reasonable
-        // size)
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(0.7f);
-
-        // Write the image
-        writer.setOutput(ImageIO.createImageOutputStream(outputStream));
-        writer.write(null, new IIOImage(image, null, null), param);
-
-        // Clean up
-        writer.dispose();
-        outputStream.close();
-
-        return outputStream.toByteArray();
-    }
-
     @DeleteMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> deleteRecipe(
@@ -206,55 +209,67 @@ public class RecipeController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<RecipeDTO>> searchRecipes(@ModelAttribute RecipeFilterDTO filterDTO) {
-        List<Recipe> recipes = recipeService.searchRecipes(filterDTO);
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<?> searchRecipes(
+            @ModelAttribute RecipeFilterDTO filterDTO,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePage(filterDTO, null, cursor, limit, includeTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
     @PostMapping("/filter")
-    public ResponseEntity<List<RecipeDTO>> filterRecipes(@RequestBody RecipeFilterDTO filterDTO) {
-        List<Recipe> recipes = recipeService.filterRecipes(filterDTO);
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<?> filterRecipes(
+            @RequestBody RecipeFilterDTO filterDTO,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePage(filterDTO, null, cursor, limit, includeTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
-    @PutMapping("/{id}/rating")
-    @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<?> updateRating(
-            @PathVariable Long id,
-            @RequestParam Float rating) {
-        try {
-            Recipe updatedRecipe = recipeService.updateRating(id, rating);
-            return ResponseEntity.ok(new RecipeDTO(updatedRecipe));
-        } catch (ResourceNotFoundException e) {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/facets")
+    public ResponseEntity<FacetCounts> getFacetCounts(@ModelAttribute RecipeFilterDTO filterDTO) {
+        return ResponseEntity.ok(recipeService.getFacetCounts(filterDTO));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(recipeService.suggest(prefix, limit));
+    }
+
+    @GetMapping("/pantry")
+    public ResponseEntity<?> findRecipesByPantry(
+            @RequestParam List<String> ingredients,
+            @RequestParam(defaultValue = "0") double minCoverage,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit) {
+        if (minCoverage < 0 || minCoverage > 1) {
+            return ResponseEntity.badRequest().body(new MessageResponse("minCoverage must be between 0 and 1"));
         }
+        List<PantryMatchDTO> matches = recipeService.findRecipesByPantry(ingredients, minCoverage, limit);
+        return ResponseEntity.ok(matches);
     }
 
     @GetMapping("/suggested")
-    public ResponseEntity<List<RecipeDTO>> getSuggestedRecipes() {
-        List<Recipe> recipes = recipeService.getSuggestedRecipes();
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<List<RecipeSummaryDTO>> getSuggestedRecipes() {
+        return ResponseEntity.ok(recipeService.getSuggestedRecipes());
     }
 
     @GetMapping("/random")
-    public ResponseEntity<List<RecipeDTO>> getRandomRecipes(
+    public ResponseEntity<List<RecipeSummaryDTO>> getRandomRecipes(
             @RequestParam(defaultValue = "10") int limit,
             @RequestParam(required = false) Long excludeId) {
-        System.out.println("Controller - Received excludeId: " + excludeId);
-        List<Recipe> recipes = recipeService.getRandomRecipes(limit, excludeId);
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+        return ResponseEntity.ok(recipeService.getRandomRecipes(limit, excludeId));
     }
 
     @GetMapping("/stats")
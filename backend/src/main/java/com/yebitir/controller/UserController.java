@@ -1,33 +1,39 @@
 package com.yebitir.controller;
 
+import com.yebitir.dto.CursorPage;
 import com.yebitir.dto.MessageResponse;
 import com.yebitir.dto.RecipeDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
 import com.yebitir.dto.UserDTO;
 import com.yebitir.dto.PublicUserDTO;
 import com.yebitir.exception.EmailAlreadyExistsException;
 import com.yebitir.exception.InvalidCredentialsException;
 import com.yebitir.exception.ResourceNotFoundException;
+import com.yebitir.exception.InvalidImageException;
+import com.yebitir.exception.TooManyRequestsException;
 import com.yebitir.exception.UsernameAlreadyExistsException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.Recipe;
 import com.yebitir.model.User;
 import com.yebitir.security.services.UserDetailsImpl;
+import com.yebitir.service.AuthTokenService;
+import com.yebitir.service.RecipeService;
 import com.yebitir.service.UserService;
+import com.yebitir.service.StoredImage;
+import com.yebitir.util.FileSpooler;
+import com.yebitir.util.ImageResponses;
+import com.yebitir.util.RecipeCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -37,10 +43,15 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class UserController {
     private final UserService userService;
+    private final RecipeService recipeService;
+    private final AuthTokenService authTokenService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecipeService recipeService,
+            AuthTokenService authTokenService) {
         this.userService = userService;
+        this.recipeService = recipeService;
+        this.authTokenService = authTokenService;
     }
 
     @GetMapping("/{username}")
@@ -53,17 +64,39 @@ public class UserController {
         }
     }
 
+    @GetMapping("/{username}/avatar")
+    public ResponseEntity<Resource> getAvatar(
+            @PathVariable String username,
+            @RequestParam(required = false) String size,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        try {
+            ImageVariant variant = ImageVariant.fromParameter(size);
+            ImageFormat format = ImageFormat.fromAcceptHeader(accept);
+            User user = userService.getUserByUsername(username);
+            StoredImage image = userService.getProfilePicture(user, variant, format);
+            return ImageResponses.immutableImage(user.getProfileImageHash(), variant, version, image);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/{username}/recipes")
-    public ResponseEntity<List<RecipeDTO>> getUserRecipesByUsername(@PathVariable String username) {
+    public ResponseEntity<?> getUserRecipesByUsername(
+            @PathVariable String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
             User user = userService.getUserByUsername(username);
-            List<Recipe> recipes = user.getRecipes();
-            List<RecipeDTO> recipeDTOs = recipes.stream()
-                    .map(RecipeDTO::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(recipeDTOs);
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePageByOwner(user.getId(), cursor, limit, includeTotal);
+            return ResponseEntity.ok(page);
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         }
     }
 
@@ -97,13 +130,16 @@ public class UserController {
             @AuthenticationPrincipal UserDetailsImpl userDetails,
             @RequestBody Map<String, String> passwordData) {
         try {
-            userService.changePassword(
+            User user = userService.changePassword(
                     userDetails.getId(),
                     passwordData.get("oldPassword"),
                     passwordData.get("newPassword"));
-            return ResponseEntity.ok(new MessageResponse("Password updated successfully"));
+            // Changing the password revoked every token, including this one
+            return ResponseEntity.ok(authTokenService.issueTokens(user));
         } catch (InvalidCredentialsException e) {
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429).body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                     .body(new MessageResponse("An unexpected error occurred: " + e.getMessage()));
@@ -112,22 +148,34 @@ public class UserController {
 
     @GetMapping("/my-recipes")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<RecipeDTO>> getUserRecipes(@AuthenticationPrincipal UserDetailsImpl userDetails) {
-        List<Recipe> recipes = userService.getUserById(userDetails.getId()).getRecipes();
-        List<RecipeDTO> recipeDTOs = recipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<?> getUserRecipes(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<RecipeSummaryDTO> page = recipeService.getRecipePageByOwner(userDetails.getId(), cursor, limit,
+                    includeTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
     @GetMapping("/saved-recipes")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<RecipeDTO>> getSavedRecipes(@AuthenticationPrincipal UserDetailsImpl userDetails) {
-        List<Recipe> savedRecipes = userService.getSavedRecipes(userDetails.getId());
-        List<RecipeDTO> recipeDTOs = savedRecipes.stream()
-                .map(RecipeDTO::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(recipeDTOs);
+    public ResponseEntity<?> getSavedRecipes(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + RecipeCursor.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<RecipeSummaryDTO> page = userService.getSavedRecipePage(userDetails.getId(), cursor, limit,
+                    includeTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
     @GetMapping("/recipe/{recipeId}/saved")
@@ -208,46 +256,17 @@ public class UserController {
                 return ResponseEntity.badRequest().body(new MessageResponse("File size should not exceed 5MB"));
             }
 
-            // Compress image
-            byte[] compressedImageBytes = compressImage(file.getBytes());
-
-            User updatedUser = userService.updateProfilePicture(userDetails.getId(), compressedImageBytes);
+            User updatedUser = userService.updateProfilePicture(userDetails.getId(), FileSpooler.spool(file));
             return ResponseEntity.ok(new UserDTO(updatedUser));
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(new MessageResponse("Failed to process image: " + e.getMessage()));
+        } catch (InvalidImageException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429).body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                     .body(new MessageResponse("An unexpected error occurred: " + e.getMessage()));
         }
     }
-
-    private byte[] compressImage(byte[] imageBytes) throws IOException {
-        // Read the image
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-
-        // Create output stream to store compressed image
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Get image writers for JPEG format
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) {
-            throw new IOException("No image writer found");
-        }
-
-        ImageWriter writer = writers.next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-
-        // Set compression quality
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(0.5f); // 50% quality
-
-        // Write the image
-        writer.setOutput(ImageIO.createImageOutputStream(outputStream));
-        writer.write(null, new IIOImage(image, null, null), param);
-
-        // Clean up
-        writer.dispose();
-
-        return outputStream.toByteArray();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.yebitir.dto;
+
+import com.yebitir.model.UserCommentReaction.ReactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A comment's reaction counts after the current user reacted to it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentReactionDTO {
+    private Long id;
+    private Integer likes;
+    private Integer dislikes;
+    private boolean userLiked;
+    private boolean userDisliked;
+
+    public CommentReactionDTO(Long id, Integer likes, Integer dislikes, ReactionType reaction) {
+        this(id, likes, dislikes, reaction == ReactionType.LIKE, reaction == ReactionType.DISLIKE);
+    }
+}
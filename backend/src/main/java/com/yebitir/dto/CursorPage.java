@@ -0,0 +1,27 @@
+package com.yebitir.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is opaque and is
+ * null on the last page; {@code total} is only filled in when requested.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> data;
+    private String nextCursor;
+    private Long total;
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mapped = data.stream().map(mapper).collect(Collectors.toList());
+        return new CursorPage<>(mapped, nextCursor, total);
+    }
+}
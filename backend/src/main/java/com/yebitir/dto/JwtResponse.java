@@ -10,14 +10,19 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class JwtResponse {
     private String token;
+    private String refreshToken;
     private String type = "Bearer";
+    // Milliseconds until the access token expires
+    private long expiresIn;
     private Long id;
     private String username;
     private String email;
     private String role;
 
-    public JwtResponse(String token, User user) {
+    public JwtResponse(String token, String refreshToken, long expiresIn, User user) {
         this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
         this.id = user.getId();
         this.username = user.getUsername();
         this.email = user.getEmail();
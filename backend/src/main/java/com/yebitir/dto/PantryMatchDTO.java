@@ -0,0 +1,18 @@
+package com.yebitir.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A recipe found by a pantry search, with how much of it the pantry covers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PantryMatchDTO {
+    private RecipeSummaryDTO recipe;
+    private int matchedIngredients;
+    private int totalIngredients;
+    private double coverage;
+}
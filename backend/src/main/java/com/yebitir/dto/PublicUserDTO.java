@@ -1,10 +1,11 @@
 package com.yebitir.dto;
 
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.User;
+import com.yebitir.util.ImageUrls;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.util.Base64;
 
 import java.time.LocalDateTime;
 
@@ -21,9 +22,8 @@ public class PublicUserDTO {
     public PublicUserDTO(User user) {
         this.username = user.getUsername();
         this.bio = user.getBio();
-        if (user.getProfileImage() != null) {
-            this.profileImage = Base64.getEncoder().encodeToString(user.getProfileImage());
-        }
+        this.profileImage = ImageUrls.avatar(user.getUsername(), user.getProfileImageHash(),
+                ImageVariant.THUMBNAIL);
         this.joinDate = user.getJoinDate();
         this.recipesCount = user.getRecipes().size();
     }
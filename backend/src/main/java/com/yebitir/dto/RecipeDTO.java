@@ -1,10 +1,12 @@
 package com.yebitir.dto;
 
+import com.yebitir.model.ImageStatus;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.Recipe;
+import com.yebitir.util.ImageUrls;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.util.Base64;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -17,7 +19,8 @@ public class RecipeDTO {
     private Long id;
     private String title;
     private String description;
-    private String image; // Base64 encoded string
+    private String image; // URL of the image endpoint
+    private ImageStatus imageStatus;
     private Integer timeInMins;
     private Float rating;
     private Integer servings;
@@ -34,12 +37,15 @@ public class RecipeDTO {
     private List<String> instructions;
 
     public RecipeDTO(Recipe recipe) {
+        this(recipe, ImageVariant.FULL);
+    }
+
+    public RecipeDTO(Recipe recipe, ImageVariant imageVariant) {
         this.id = recipe.getId();
         this.title = recipe.getTitle();
         this.description = recipe.getDescription();
-        if (recipe.getImage() != null) {
-            this.image = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(recipe.getImage());
-        }
+        this.image = ImageUrls.recipeImage(recipe.getId(), recipe.getImageHash(), imageVariant);
+        this.imageStatus = recipe.getImageStatus();
         this.timeInMins = recipe.getTimeInMins();
         this.rating = recipe.getRating();
         this.servings = recipe.getServings();
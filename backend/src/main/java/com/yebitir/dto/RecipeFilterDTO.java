@@ -16,4 +16,5 @@ public class RecipeFilterDTO {
     private String diet;
     private String mainIngredient;
     private Integer servings;
+    private String sort; // see RecipeSort, newest first when unset
 }
\ No newline at end of file
@@ -1,11 +1,12 @@
 package com.yebitir.dto;
 
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.User;
+import com.yebitir.util.ImageUrls;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
-import java.util.Base64;
 
 @Data
 @NoArgsConstructor
@@ -17,9 +18,13 @@ public class RecipeOwnerDTO {
 
     public RecipeOwnerDTO(User user) {
         this.username = user.getUsername();
-        if (user.getProfileImage() != null) {
-            this.profileImage = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(user.getProfileImage());
-        }
+        this.profileImage = ImageUrls.avatar(user.getUsername(), user.getProfileImageHash(),
+                ImageVariant.THUMBNAIL);
         this.joinDate = user.getJoinDate();
     }
+
+    public RecipeOwnerDTO(String username, String profileImageHash) {
+        this.username = username;
+        this.profileImage = ImageUrls.avatar(username, profileImageHash, ImageVariant.THUMBNAIL);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.yebitir.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The rating aggregates of a recipe, all the rating-ranked indexes need after
+ * a rating changes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeRatingDTO {
+    private Long id;
+    private Float rating;
+    private Double ratingSum;
+    private Integer ratingCount;
+    private Integer ratingKey;
+}
@@ -0,0 +1,58 @@
+package com.yebitir.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.yebitir.model.ImageStatus;
+import com.yebitir.model.ImageVariant;
+import com.yebitir.util.ImageUrls;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Recipe card for listings. Built directly by the constructor expressions in
+ * {@link com.yebitir.repository.RecipeRepository}, so a page is a single query
+ * that never loads ingredients, instructions or the owner entity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeSummaryDTO {
+    private Long id;
+    private String title;
+    private String image; // URL of the thumbnail
+    private ImageStatus imageStatus;
+    private Integer timeInMins;
+    private Float rating;
+    private Integer servings;
+    private String cuisine;
+    private String mealType;
+    private LocalDateTime dateCreated;
+    private Boolean active;
+    private RecipeOwnerDTO owner;
+    // Stored sort keys, read back for cursors so they match what the query compares
+    @JsonIgnore
+    private Integer ratingKey;
+    @JsonIgnore
+    private Integer timeKey;
+
+    public RecipeSummaryDTO(Long id, String title, String imageHash, ImageStatus imageStatus, Integer timeInMins,
+            Float rating, Integer servings, String cuisine, String mealType, LocalDateTime dateCreated,
+            Boolean active, String ownerUsername, String ownerImageHash, Integer ratingKey, Integer timeKey) {
+        this.id = id;
+        this.title = title;
+        this.image = ImageUrls.recipeImage(id, imageHash, ImageVariant.THUMBNAIL);
+        this.imageStatus = imageStatus;
+        this.timeInMins = timeInMins;
+        this.rating = rating;
+        this.servings = servings;
+        this.cuisine = cuisine;
+        this.mealType = mealType;
+        this.dateCreated = dateCreated;
+        this.active = active;
+        this.owner = ownerUsername != null ? new RecipeOwnerDTO(ownerUsername, ownerImageHash) : null;
+        this.ratingKey = ratingKey;
+        this.timeKey = timeKey;
+    }
+}
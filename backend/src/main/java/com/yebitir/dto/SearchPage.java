@@ -0,0 +1,25 @@
+package com.yebitir.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link CursorPage} of full-text search results. {@code facets} holds the
+ * number of matching recipes per cuisine, meal type and diet; it is only
+ * computed for the first page.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class SearchPage<T> extends CursorPage<T> {
+    private Map<String, Map<String, Long>> facets;
+
+    public SearchPage(List<T> data, String nextCursor, Long total, Map<String, Map<String, Long>> facets) {
+        super(data, nextCursor, total);
+        this.facets = facets;
+    }
+}
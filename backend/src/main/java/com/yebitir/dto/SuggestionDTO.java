@@ -0,0 +1,22 @@
+package com.yebitir.dto;
+
+import com.yebitir.search.Suggestion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A typeahead completion: a recipe title, a cuisine or an ingredient name.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private String text;
+    private String type;
+
+    public SuggestionDTO(Suggestion suggestion) {
+        this.text = suggestion.text();
+        this.type = suggestion.type().name();
+    }
+}
@@ -1,10 +1,12 @@
 package com.yebitir.dto;
 
+import com.yebitir.model.ImageStatus;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.User;
+import com.yebitir.util.ImageUrls;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.util.Base64;
 
 import java.time.LocalDateTime;
 
@@ -17,6 +19,7 @@ public class UserDTO {
     private String email;
     private String bio;
     private String profileImage;
+    private ImageStatus profileImageStatus;
     private LocalDateTime joinDate;
     private String role;
     private int recipesCount;
@@ -27,11 +30,9 @@ public class UserDTO {
         this.username = user.getUsername();
         this.email = user.getEmail();
         this.bio = user.getBio();
-
-        // Convert byte[] to Base64 string if profile image exists
-        if (user.getProfileImage() != null) {
-            this.profileImage = Base64.getEncoder().encodeToString(user.getProfileImage());
-        }
+        this.profileImage = ImageUrls.avatar(user.getUsername(), user.getProfileImageHash(),
+                ImageVariant.THUMBNAIL);
+        this.profileImageStatus = user.getProfileImageStatus();
         this.joinDate = user.getJoinDate();
         this.role = user.getRole().name();
         this.recipesCount = user.getRecipes().size();
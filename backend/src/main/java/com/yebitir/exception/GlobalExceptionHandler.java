@@ -53,6 +53,27 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidImageException.class)
+    public ResponseEntity<MessageResponse> handleInvalidImageException(InvalidImageException ex,
+            WebRequest request) {
+        MessageResponse message = new MessageResponse(ex.getMessage());
+        return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<MessageResponse> handleTooManyRequestsException(TooManyRequestsException ex,
+            WebRequest request) {
+        MessageResponse message = new MessageResponse(ex.getMessage());
+        return new ResponseEntity<>(message, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(InvalidTokenException.class)
+    public ResponseEntity<MessageResponse> handleInvalidTokenException(InvalidTokenException ex,
+            WebRequest request) {
+        MessageResponse message = new MessageResponse(ex.getMessage());
+        return new ResponseEntity<>(message, HttpStatus.UNAUTHORIZED);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<MessageResponse> handleBadCredentialsException(BadCredentialsException ex,
             WebRequest request) {
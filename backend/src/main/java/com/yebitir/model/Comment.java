@@ -31,8 +31,11 @@ public class Comment {
     @Column(nullable = false)
     private LocalDateTime time;
 
+    // Reaction counts are only written by CommentReactionBuffer
+    @Column(updatable = false)
     private Integer likes = 0;
 
+    @Column(updatable = false)
     private Integer dislikes = 0;
 
     @Column(nullable = false)
@@ -0,0 +1,53 @@
+package com.yebitir.model;
+
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Encodings stored for every {@link ImageVariant}. JPEG is always present;
+ * WebP is produced when an encoder is available and served to clients that
+ * ask for it.
+ */
+public enum ImageFormat {
+    JPEG("jpg", MediaType.IMAGE_JPEG),
+    WEBP("webp", new MediaType("image", "webp"));
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ImageFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format for an {@code Accept} header. WebP is only chosen when
+     * the client names it explicitly, since a bare wildcard says nothing about
+     * what it can decode.
+     */
+    public static ImageFormat fromAcceptHeader(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JPEG;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            for (MediaType mediaType : mediaTypes) {
+                if (mediaType.equalsTypeAndSubtype(WEBP.mediaType) && mediaType.getQualityValue() > 0) {
+                    return WEBP;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Malformed header, fall back to the universally supported format
+        }
+        return JPEG;
+    }
+}
@@ -0,0 +1,8 @@
+package com.yebitir.model;
+
+/**
+ * Lifecycle of an uploaded image while it is processed in the background.
+ */
+public enum ImageStatus {
+    PROCESSING, READY, FAILED
+}
@@ -0,0 +1,36 @@
+package com.yebitir.model;
+
+/**
+ * The derivatives generated for every uploaded image, largest first.
+ */
+public enum ImageVariant {
+    FULL(1280, 0.8f),
+    CARD(480, 0.75f),
+    THUMBNAIL(160, 0.7f);
+
+    private final int maxDimension;
+    private final float quality;
+
+    ImageVariant(int maxDimension, float quality) {
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    /**
+     * Parses the {@code size} request parameter, defaulting to {@link #FULL}.
+     */
+    public static ImageVariant fromParameter(String size) {
+        if (size == null || size.isBlank()) {
+            return FULL;
+        }
+        return valueOf(size.trim().toUpperCase());
+    }
+}
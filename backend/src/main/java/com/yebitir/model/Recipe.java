@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.ToString;
 import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -17,7 +18,15 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "recipes")
+// Listings page by (date_created, id) newest first, see RecipeRepository.AFTER_CURSOR;
+// the other search orders page by (rating_key, id) and (time_key, id)
+@Table(name = "recipes", indexes = {
+        @Index(name = "idx_recipes_created", columnList = "date_created, id"),
+        @Index(name = "idx_recipes_active_created", columnList = "is_active, date_created, id"),
+        @Index(name = "idx_recipes_active_rating", columnList = "is_active, rating_key, id"),
+        @Index(name = "idx_recipes_active_time", columnList = "is_active, time_key, id"),
+        @Index(name = "idx_recipes_owner_created", columnList = "owner_id, date_created, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -35,14 +44,42 @@ public class Recipe {
     @Column(columnDefinition = "TEXT")
     private String description;
 
-    @Column(name = "image", columnDefinition = "LONGBLOB")
-    private byte[] image;
+    // Written only through RecipeRepository.updateImage so a background image
+    // job never races with a full-entity save
+    @Column(name = "image_hash", length = 64, updatable = false)
+    private String imageHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "image_status", updatable = false)
+    private ImageStatus imageStatus;
 
     @Column(name = "time_in_mins")
     private Integer timeInMins;
 
+    // RecipeSort.QUICKEST key: the time, or RecipeSort.UNKNOWN_TIME so
+    // recipes without one sort last
+    @Column(name = "time_key", nullable = false)
+    @ColumnDefault("2147483647")
+    private Integer timeKey = Integer.MAX_VALUE;
+
+    // The rating columns are only written by RecipeRepository.addRating, so
+    // saving a stale entity never loses a concurrent rating
+    @Column(updatable = false)
     private Float rating;
 
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Double ratingSum = 0.0;
+
+    @Column(name = "rating_count", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer ratingCount = 0;
+
+    // RecipeSort.TOP_RATED key: the rating in whole hundredths
+    @Column(name = "rating_key", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer ratingKey = 0;
+
     private Integer servings;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -52,6 +89,9 @@ public class Recipe {
     @Column(name = "date_created")
     private LocalDateTime dateCreated;
 
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
     private String cuisine;
 
     @Column(name = "meal_type")
@@ -88,4 +128,10 @@ public class Recipe {
 
     @OneToMany(mappedBy = "recipe", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
+
+    @PrePersist
+    @PreUpdate
+    void updateTimeKey() {
+        timeKey = timeInMins != null ? timeInMins : Integer.MAX_VALUE;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.yebitir.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * The id of a token revoked before it expires, kept until it expires. Read
+ * and written by {@link com.yebitir.security.services.TokenRevocations}.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = @Index(name = "idx_revoked_tokens_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // When the token was revoked, so a refresh token reused right after its
+    // rotation can be told apart from a stolen one
+    @Column(name = "revoked_at")
+    @ColumnDefault("CURRENT_TIMESTAMP(6)")
+    private LocalDateTime revokedAt;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,7 +13,8 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_token_version_changed",
+        columnList = "token_version_changed_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,8 +32,14 @@ public class User {
     @Column(nullable = false)
     private String password;
 
-    @Column(name = "profile_image", columnDefinition = "LONGBLOB")
-    private byte[] profileImage;
+    // Written only through UserRepository.updateProfileImage so a background
+    // image job never races with a full-entity save
+    @Column(name = "profile_image_hash", length = 64, updatable = false)
+    private String profileImageHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "profile_image_status", updatable = false)
+    private ImageStatus profileImageStatus;
 
     private String bio;
 
@@ -45,6 +53,18 @@ public class User {
     @Column(nullable = false)
     private boolean active = true;
 
+    // Tokens carry the version they were issued with, so bumping it revokes them
+    @Column(name = "token_version", nullable = false)
+    @ColumnDefault("0")
+    private int tokenVersion;
+
+    // When the token version was last bumped, so other instances only read
+    // the users changed since their last refresh. Existing rows get the time
+    // the column was added, so versions bumped before then are read once.
+    @Column(name = "token_version_changed_at")
+    @ColumnDefault("CURRENT_TIMESTAMP(6)")
+    private LocalDateTime tokenVersionChangedAt;
+
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Recipe> recipes = new ArrayList<>();
 
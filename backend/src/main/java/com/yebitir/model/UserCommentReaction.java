@@ -6,7 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "user_comment_reactions")
+@Table(name = "user_comment_reactions", uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "comment_id" }))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
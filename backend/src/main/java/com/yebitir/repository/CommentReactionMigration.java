@@ -0,0 +1,99 @@
+package com.yebitir.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes duplicate reactions of a user to the same comment before Hibernate
+ * updates the schema, which adds the unique key on
+ * {@code user_comment_reactions (user_id, comment_id)} and cannot while
+ * duplicates exist. The latest reaction of each pair is kept and the like and
+ * dislike counters of all comments are recounted from the remaining rows.
+ * Does nothing on a new database or once the unique key exists, so the
+ * duplicates are only searched for until the schema update has run once.
+ */
+@Component
+@Slf4j
+public class CommentReactionMigration {
+    private static final String TABLE = "user_comment_reactions";
+    private static final Set<String> UNIQUE_KEY_COLUMNS = Set.of("user_id", "comment_id");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CommentReactionMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void removeDuplicates() {
+        if (!tableExists() || hasUniqueKey()) {
+            return;
+        }
+        Integer duplicated = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT user_id FROM " + TABLE +
+                " GROUP BY user_id, comment_id HAVING COUNT(*) > 1) duplicated", Integer.class);
+        if (duplicated == null || duplicated == 0) {
+            return;
+        }
+        // The grouped derived table is materialized, so MySQL allows deleting from the table it reads
+        int removed = jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE id NOT IN (SELECT keep_id FROM " +
+                "(SELECT MAX(id) AS keep_id FROM " + TABLE + " GROUP BY user_id, comment_id) kept)");
+        jdbcTemplate.update("UPDATE comments SET " +
+                "likes = (SELECT COUNT(*) FROM " + TABLE + " r WHERE r.comment_id = comments.id " +
+                "AND r.reaction_type = 'LIKE'), " +
+                "dislikes = (SELECT COUNT(*) FROM " + TABLE + " r WHERE r.comment_id = comments.id " +
+                "AND r.reaction_type = 'DISLIKE')");
+        log.info("Removed {} duplicate comment reactions of {} user and comment pairs and recounted reactions",
+                removed, duplicated);
+    }
+
+    private boolean tableExists() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet tables = connection.getMetaData().getTables(connection.getCatalog(), null, TABLE,
+                    new String[] { "TABLE" })) {
+                return tables.next();
+            }
+        }));
+    }
+
+    // Reads the indexes from the database metadata, i.e. information_schema.statistics on MySQL
+    private boolean hasUniqueKey() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Map<String, Set<String>> uniqueIndexes = new HashMap<>();
+            try (ResultSet columns = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, TABLE,
+                    true, true)) {
+                while (columns.next()) {
+                    String column = columns.getString("COLUMN_NAME");
+                    if (column != null) {
+                        uniqueIndexes.computeIfAbsent(columns.getString("INDEX_NAME"), name -> new HashSet<>())
+                                .add(column.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return uniqueIndexes.containsValue(UNIQUE_KEY_COLUMNS);
+        }));
+    }
+
+    /**
+     * Runs the migration before the entity manager factory and with it the
+     * schema update.
+     */
+    @Component
+    static class EntityManagerFactoryDependency extends EntityManagerFactoryDependsOnPostProcessor {
+        EntityManagerFactoryDependency() {
+            super(CommentReactionMigration.class);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.yebitir.repository;
 
+import com.yebitir.dto.CommentReactionDTO;
 import com.yebitir.model.Comment;
 import com.yebitir.model.Recipe;
 import com.yebitir.model.User;
@@ -18,4 +19,12 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByRecipeWithAuthor(@Param("recipe") Recipe recipe);
 
     List<Comment> findByAuthor(User author);
+
+    /**
+     * A comment's stored counts together with the given user's stored reaction to it.
+     */
+    @Query("SELECT new com.yebitir.dto.CommentReactionDTO(c.id, c.likes, c.dislikes, r.reactionType) " +
+            "FROM Comment c LEFT JOIN UserCommentReaction r ON r.comment = c AND r.user.id = :userId " +
+            "WHERE c.id = :id")
+    CommentReactionDTO findReactionCounts(@Param("id") Long id, @Param("userId") Long userId);
 }
\ No newline at end of file
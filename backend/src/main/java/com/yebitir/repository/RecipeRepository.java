@@ -1,57 +1,143 @@
 package com.yebitir.repository;
 
+import com.yebitir.dto.RecipeRatingDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.model.ImageStatus;
 import com.yebitir.model.Recipe;
 import com.yebitir.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface RecipeRepository extends JpaRepository<Recipe, Long> {
+public interface RecipeRepository extends JpaRepository<Recipe, Long>, RecipeSearchRepository {
+        /**
+         * Keyset condition for listings ordered by {@link #NEWEST_FIRST}: rows
+         * strictly after the cursor, or every row when no cursor is given.
+         */
+        String AFTER_CURSOR = "(:afterDate IS NULL OR r.dateCreated < :afterDate " +
+                        "OR (r.dateCreated = :afterDate AND r.id < :afterId))";
+
+        String NEWEST_FIRST = " ORDER BY r.dateCreated DESC, r.id DESC";
+
+        /**
+         * Selects {@link RecipeSummaryDTO}s from {@code Recipe r LEFT JOIN r.owner o}.
+         */
+        String SELECT_SUMMARY = "SELECT new com.yebitir.dto.RecipeSummaryDTO(r.id, r.title, r.imageHash, " +
+                        "r.imageStatus, r.timeInMins, r.rating, r.servings, r.cuisine, r.mealType, r.dateCreated, " +
+                        "r.active, o.username, o.profileImageHash, r.ratingKey, r.timeKey) ";
+
         List<Recipe> findByOwner(User owner);
 
-        List<Recipe> findByTitleContainingIgnoreCase(String title);
+        List<Recipe> findByActiveTrue();
 
-        List<Recipe> findByCuisine(String cuisine);
+        List<Recipe> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 
-        List<Recipe> findByMealType(String mealType);
+        /*
+         * Load the collections of already loaded recipes, one query each;
+         * fetching both lists in one query would multiply their rows.
+         */
 
-        List<Recipe> findByDiet(String diet);
+        @Query("SELECT r FROM Recipe r LEFT JOIN FETCH r.ingredients WHERE r IN :recipes")
+        List<Recipe> fetchIngredients(@Param("recipes") Collection<Recipe> recipes);
 
-        List<Recipe> findByMainIngredient(String mainIngredient);
+        @Query("SELECT r FROM Recipe r LEFT JOIN FETCH r.instructions WHERE r IN :recipes")
+        List<Recipe> fetchInstructions(@Param("recipes") Collection<Recipe> recipes);
 
-        List<Recipe> findByTimeInMinsLessThanEqual(Integer maxCookingTime);
+        @Query(SELECT_SUMMARY + "FROM Recipe r LEFT JOIN r.owner o WHERE o.id = :ownerId AND " + AFTER_CURSOR +
+                        NEWEST_FIRST)
+        List<RecipeSummaryDTO> findPageByOwner(
+                        @Param("ownerId") Long ownerId,
+                        @Param("afterDate") LocalDateTime afterDate,
+                        @Param("afterId") Long afterId,
+                        Limit limit);
 
-        List<Recipe> findByActiveTrue();
+        long countByOwnerId(Long ownerId);
+
+        @Query(SELECT_SUMMARY + "FROM User u JOIN u.savedRecipes r LEFT JOIN r.owner o WHERE u.id = :userId AND " +
+                        AFTER_CURSOR + NEWEST_FIRST)
+        List<RecipeSummaryDTO> findSavedPage(
+                        @Param("userId") Long userId,
+                        @Param("afterDate") LocalDateTime afterDate,
+                        @Param("afterId") Long afterId,
+                        Limit limit);
+
+        @Query("SELECT COUNT(r) FROM User u JOIN u.savedRecipes r WHERE u.id = :userId")
+        long countSavedByUserId(@Param("userId") Long userId);
+
+        @Query(SELECT_SUMMARY + "FROM Recipe r LEFT JOIN r.owner o WHERE r.id IN :ids")
+        List<RecipeSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+        boolean existsByImageHash(String imageHash);
+
+        @Transactional
+        @Modifying
+        @Query("UPDATE Recipe r SET r.imageHash = :imageHash, r.imageStatus = :status WHERE r.id = :id")
+        int updateImage(@Param("id") Long id, @Param("imageHash") String imageHash,
+                        @Param("status") ImageStatus status);
+
+        @Transactional
+        @Modifying
+        @Query("UPDATE Recipe r SET r.imageStatus = :status WHERE r.id = :id")
+        int updateImageStatus(@Param("id") Long id, @Param("status") ImageStatus status);
+
+        /**
+         * Adds to a recipe's rating aggregates in the database, so concurrent
+         * ratings never overwrite each other, and derives the average from
+         * them. The average and its sort key are assigned first as MySQL
+         * evaluates assignments left to right.
+         */
+        @Transactional
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE Recipe r SET " +
+                        "r.rating = CASE WHEN r.ratingCount + :countDelta > 0 " +
+                        "THEN CAST((r.ratingSum + :sumDelta) / (r.ratingCount + :countDelta) AS float) ELSE 0 END, " +
+                        "r.ratingKey = CAST(FLOOR(CASE WHEN r.ratingCount + :countDelta > 0 " +
+                        "THEN CAST((r.ratingSum + :sumDelta) / (r.ratingCount + :countDelta) AS float) ELSE 0 END " +
+                        "* 100) AS integer), " +
+                        "r.ratingSum = r.ratingSum + :sumDelta, r.ratingCount = r.ratingCount + :countDelta " +
+                        "WHERE r.id = :id")
+        int addRating(@Param("id") Long id, @Param("sumDelta") double sumDelta, @Param("countDelta") int countDelta);
+
+        @Query("SELECT new com.yebitir.dto.RecipeRatingDTO(r.id, r.rating, r.ratingSum, r.ratingCount, " +
+                        "r.ratingKey) " +
+                        "FROM Recipe r WHERE r.id = :id")
+        Optional<RecipeRatingDTO> findRatingById(@Param("id") Long id);
+
+        /**
+         * Computes the rating aggregates of recipes rated before they were
+         * kept, i.e. recipes with comments or a rating but no counted ratings.
+         */
+        @Transactional
+        @Modifying
+        @Query("UPDATE Recipe r SET " +
+                        "r.rating = (SELECT CAST(COALESCE(AVG(c.rating), 0) AS float) FROM Comment c WHERE c.recipe = r), " +
+                        "r.ratingSum = (SELECT COALESCE(SUM(c.rating), 0) FROM Comment c WHERE c.recipe = r), " +
+                        "r.ratingCount = (SELECT COUNT(c) FROM Comment c WHERE c.recipe = r) " +
+                        "WHERE r.ratingCount = 0 AND (COALESCE(r.rating, 0) <> 0 " +
+                        "OR EXISTS (SELECT 1 FROM Comment c WHERE c.recipe = r))")
+        int backfillRatings();
 
-        @Query("SELECT r FROM Recipe r WHERE " +
-                        "(:title IS NULL OR LOWER(r.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
-                        "(:minRating IS NULL OR r.rating >= :minRating) AND " +
-                        "(:maxCookingTime IS NULL OR r.timeInMins <= :maxCookingTime) AND " +
-                        "(:cuisine IS NULL OR r.cuisine = :cuisine) AND " +
-                        "(:mealType IS NULL OR r.mealType = :mealType) AND " +
-                        "(:diet IS NULL OR r.diet = :diet) AND " +
-                        "(:mainIngredient IS NULL OR r.mainIngredient = :mainIngredient) AND " +
-                        "(:servings IS NULL OR r.servings = :servings)")
-        List<Recipe> findByFilters(
-                        @Param("title") String title,
-                        @Param("minRating") Float minRating,
-                        @Param("maxCookingTime") Integer maxCookingTime,
-                        @Param("cuisine") String cuisine,
-                        @Param("mealType") String mealType,
-                        @Param("diet") String diet,
-                        @Param("mainIngredient") String mainIngredient,
-                        @Param("servings") Integer servings);
-
-        @Query(value = "SELECT * FROM recipes WHERE id != CAST(:excludeId AS SIGNED) ORDER BY RAND() LIMIT :limit", nativeQuery = true)
-        List<Recipe> findRandomRecipesExcluding(@Param("limit") int limit, @Param("excludeId") Long excludeId);
-
-        @Query(value = "SELECT * FROM recipes ORDER BY RAND() LIMIT :limit", nativeQuery = true)
-        List<Recipe> findRandomRecipes(@Param("limit") int limit);
-
-        @Query(value = "SELECT CONCAT('Executing query with excludeId: ', :excludeId, ' and limit: ', :limit) as debug", nativeQuery = true)
-        String debugQuery(@Param("limit") int limit, @Param("excludeId") Long excludeId);
+        /**
+         * Brings the stored sort keys in line with the rating and time they
+         * are derived from, e.g. after the key columns were added or the
+         * ratings were backfilled.
+         */
+        @Transactional
+        @Modifying
+        @Query("UPDATE Recipe r SET " +
+                        "r.ratingKey = CAST(FLOOR(COALESCE(r.rating, 0) * 100) AS integer), " +
+                        "r.timeKey = COALESCE(r.timeInMins, " + RecipeSort.UNKNOWN_TIME + ") " +
+                        "WHERE r.ratingKey <> CAST(FLOOR(COALESCE(r.rating, 0) * 100) AS integer) " +
+                        "OR r.timeKey <> COALESCE(r.timeInMins, " + RecipeSort.UNKNOWN_TIME + ")")
+        int backfillSortKeys();
 }
\ No newline at end of file
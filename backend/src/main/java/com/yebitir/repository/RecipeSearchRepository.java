@@ -0,0 +1,24 @@
+package com.yebitir.repository;
+
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.util.RecipeCursor;
+
+import java.util.List;
+
+/**
+ * Dynamic recipe search, implemented with the Criteria API so that each
+ * request becomes one statement containing only the predicates it uses.
+ */
+public interface RecipeSearchRepository {
+
+    /**
+     * Returns up to {@code limit} recipes matching every filter that is set,
+     * ordered by the cursor's {@link RecipeSort} and starting after it.
+     *
+     * @param active Restricts to published or pending recipes; null for both
+     */
+    List<RecipeSummaryDTO> search(RecipeFilterDTO filter, Boolean active, RecipeCursor after, int limit);
+
+    long count(RecipeFilterDTO filter, Boolean active);
+}
@@ -0,0 +1,136 @@
+package com.yebitir.repository;
+
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.model.Recipe;
+import com.yebitir.model.User;
+import com.yebitir.util.RecipeCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
+    private final EntityManager entityManager;
+
+    @Autowired
+    RecipeSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<RecipeSummaryDTO> search(RecipeFilterDTO filter, Boolean active, RecipeCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RecipeSummaryDTO> query = cb.createQuery(RecipeSummaryDTO.class);
+        Root<Recipe> recipe = query.from(Recipe.class);
+        Join<Recipe, User> owner = recipe.join("owner", JoinType.LEFT);
+
+        query.select(cb.construct(RecipeSummaryDTO.class,
+                recipe.get("id"), recipe.get("title"), recipe.get("imageHash"), recipe.get("imageStatus"),
+                recipe.get("timeInMins"), recipe.get("rating"), recipe.get("servings"), recipe.get("cuisine"),
+                recipe.get("mealType"), recipe.get("dateCreated"), recipe.get("active"),
+                owner.get("username"), owner.get("profileImageHash"), recipe.get("ratingKey"),
+                recipe.get("timeKey")));
+
+        RecipeSort sort = after.getSort();
+        Expression<Comparable<Object>> key = sortKey(recipe, sort);
+        Expression<Long> id = recipe.get("id");
+
+        List<Predicate> predicates = filterPredicates(cb, recipe, filter, active);
+        if (!after.isFirstPage()) {
+            predicates.add(afterCursor(cb, sort, key, id, after));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        List<Order> order = sort.isDescending()
+                ? List.of(cb.desc(key), cb.desc(id))
+                : List.of(cb.asc(key), cb.asc(id));
+        query.orderBy(order);
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long count(RecipeFilterDTO filter, Boolean active) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Recipe> recipe = query.from(Recipe.class);
+        query.select(cb.count(recipe));
+        query.where(filterPredicates(cb, recipe, filter, active).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * One predicate per filter that is actually set; blank strings count as
+     * unset. Query text is matched by the search index, never here.
+     */
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, Root<Recipe> recipe, RecipeFilterDTO filter,
+            Boolean active) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getMinRating() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(recipe.get("rating"), filter.getMinRating()));
+        }
+        if (filter.getMaxCookingTime() != null) {
+            predicates.add(cb.lessThanOrEqualTo(recipe.get("timeInMins"), filter.getMaxCookingTime()));
+        }
+        addEquals(cb, predicates, recipe.get("cuisine"), filter.getCuisine());
+        addEquals(cb, predicates, recipe.get("mealType"), filter.getMealType());
+        addEquals(cb, predicates, recipe.get("diet"), filter.getDiet());
+        addEquals(cb, predicates, recipe.get("mainIngredient"), filter.getMainIngredient());
+        if (filter.getServings() != null) {
+            predicates.add(cb.equal(recipe.get("servings"), filter.getServings()));
+        }
+        if (active != null) {
+            predicates.add(cb.equal(recipe.get("active"), active));
+        }
+        return predicates;
+    }
+
+    /**
+     * The column a {@link RecipeSort} orders by; must agree with
+     * {@link RecipeSort#keyOf}. Each is a plain indexed column, so a page is
+     * an index range scan rather than a sort.
+     */
+    private Expression<Comparable<Object>> sortKey(Root<Recipe> recipe, RecipeSort sort) {
+        switch (sort) {
+            case TOP_RATED:
+                return recipe.get("ratingKey");
+            case QUICKEST:
+                return recipe.get("timeKey");
+            default:
+                return recipe.get("dateCreated");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Predicate afterCursor(CriteriaBuilder cb, RecipeSort sort, Expression<Comparable<Object>> key,
+            Expression<Long> id, RecipeCursor after) {
+        Comparable<Object> lastKey = (Comparable<Object>) after.getKey();
+        if (sort.isDescending()) {
+            return cb.or(cb.lessThan(key, lastKey),
+                    cb.and(cb.equal(key, lastKey), cb.lessThan(id, after.getId())));
+        }
+        return cb.or(cb.greaterThan(key, lastKey),
+                cb.and(cb.equal(key, lastKey), cb.greaterThan(id, after.getId())));
+    }
+
+    private void addEquals(CriteriaBuilder cb, List<Predicate> predicates, Expression<String> attribute,
+            String value) {
+        if (hasText(value)) {
+            predicates.add(cb.equal(attribute, value.trim()));
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
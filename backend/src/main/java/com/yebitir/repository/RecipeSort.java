@@ -0,0 +1,75 @@
+package com.yebitir.repository;
+
+import com.yebitir.dto.RecipeSummaryDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Orderings supported by recipe searches. Each sorts on one key with the id as
+ * tie-breaker in the same direction, so a page boundary is always a single
+ * {@code (key, id)} position. Missing ratings count as 0 and missing times
+ * sort last. Ratings are compared in whole hundredths, because a FLOAT
+ * column never compares equal to the decimal a cursor would carry. Both keys
+ * are stored columns and cursors carry the stored value, so no rounding is
+ * ever repeated outside the database. {@link #RELEVANCE} is only available for full-text
+ * searches, which the search index ranks and pages itself.
+ */
+public enum RecipeSort {
+    NEWEST(true),
+    TOP_RATED(true),
+    QUICKEST(false),
+    RELEVANCE(true);
+
+    public static final int UNKNOWN_TIME = Integer.MAX_VALUE;
+
+    private final boolean descending;
+
+    RecipeSort(boolean descending) {
+        this.descending = descending;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * The sort key of a result row, as compared by the query.
+     */
+    public Object keyOf(RecipeSummaryDTO recipe) {
+        switch (this) {
+            case TOP_RATED:
+                return recipe.getRatingKey() != null ? recipe.getRatingKey() : 0;
+            case QUICKEST:
+                return recipe.getTimeKey() != null ? recipe.getTimeKey() : UNKNOWN_TIME;
+            case RELEVANCE:
+                throw new UnsupportedOperationException("Relevance is only known to the search index");
+            default:
+                return recipe.getDateCreated();
+        }
+    }
+
+    /**
+     * Parses a key previously produced by {@link #keyOf} and rendered with {@code toString()}.
+     */
+    public Object parseKey(String value) {
+        switch (this) {
+            case TOP_RATED:
+            case QUICKEST:
+                return Integer.valueOf(value);
+            case RELEVANCE:
+                return Float.valueOf(value);
+            default:
+                return LocalDateTime.parse(value);
+        }
+    }
+
+    /**
+     * Parses the {@code sort} request parameter, defaulting to {@link #NEWEST}.
+     */
+    public static RecipeSort fromParameter(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return NEWEST;
+        }
+        return valueOf(sort.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -1,8 +1,13 @@
 package com.yebitir.repository;
 
+import com.yebitir.model.ImageStatus;
 import com.yebitir.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -15,4 +20,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
+
+    boolean existsByProfileImageHash(String profileImageHash);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.profileImageHash = :imageHash, u.profileImageStatus = :status WHERE u.id = :id")
+    int updateProfileImage(@Param("id") Long id, @Param("imageHash") String imageHash,
+            @Param("status") ImageStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.profileImageStatus = :status WHERE u.id = :id")
+    int updateProfileImageStatus(@Param("id") Long id, @Param("status") ImageStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.yebitir.search;
+
+import java.util.Map;
+
+/**
+ * @param total  Published recipes matching every filter
+ * @param facets Matching recipes per value, by facet
+ */
+public record FacetCounts(long total, Map<String, Map<String, Long>> facets) {
+}
@@ -0,0 +1,102 @@
+package com.yebitir.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a free-text ingredient line such as "2 su bardağı kırmızı mercimek
+ * (yıkanmış)" or "3 cloves garlic, minced" to a canonical name ("kirmizi
+ * mercimek", "garlic"): quantities, units, notes and filler words are dropped,
+ * the text is lowercased and folded to ASCII and every word is reduced to its
+ * singular. Recipe ingredients and pantry items go through the same steps, so
+ * they can be compared by plain equality.
+ */
+final class IngredientNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOTES = Pattern.compile("\\([^)]*\\)|\\[[^]]*]|[,;:].*$");
+    private static final Pattern PHRASES = Pattern.compile(
+            "\\b(to taste|as needed|for serving|for garnish|optional|istege bagli|yeteri kadar|bir miktar|az miktar)\\b");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z]+");
+
+    private static final Set<String> UNITS = Set.of(
+            "g", "gr", "gram", "kg", "mg", "ml", "cl", "dl", "l", "lt", "liter", "litre",
+            "cup", "tbsp", "tsp", "tablespoon", "teaspoon", "oz", "ounce", "lb", "pound",
+            "pinch", "dash", "handful", "clove", "can", "jar", "slice", "piece", "bunch", "package", "pack",
+            "adet", "tutam", "dis", "dilim", "paket", "kase", "bardak", "bardagi", "kasik", "kasigi",
+            "fincan", "fincani", "demet", "avuc", "kutu", "kavanoz", "tane", "yaprak");
+
+    /** Words that only qualify a unit, as in "su bardağı" or "yemek kaşığı". */
+    private static final Set<String> UNIT_QUALIFIERS = Set.of("su", "yemek", "cay", "tatli", "kahve", "silme",
+            "tepeleme");
+
+    private static final Set<String> FILLERS = Set.of(
+            "a", "an", "of", "and", "or", "the", "fresh", "large", "small", "medium", "whole", "chopped",
+            "sliced", "diced", "minced", "ground", "buyuk", "kucuk", "orta", "boy", "taze", "ince",
+            "dogranmis", "rendelenmis", "kiyilmis", "yarim", "ceyrek", "bir", "iki", "uc");
+
+    private IngredientNormalizer() {
+    }
+
+    static Optional<String> normalize(String ingredient) {
+        if (ingredient == null) {
+            return Optional.empty();
+        }
+        String text = fold(ingredient);
+        text = NOTES.matcher(text).replaceAll(" ");
+        text = PHRASES.matcher(text).replaceAll(" ");
+
+        String[] tokens = NON_WORD.split(text.trim());
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            String word = tokens[i];
+            if (word.isEmpty() || FILLERS.contains(word)) {
+                continue;
+            }
+            // Units only count as such before the name, so "1 su bardağı su" still leaves "su"
+            if (words.isEmpty() && (isUnit(word)
+                    || UNIT_QUALIFIERS.contains(word) && i + 1 < tokens.length && isUnit(tokens[i + 1]))) {
+                continue;
+            }
+            words.add(singular(word));
+        }
+        return words.isEmpty() ? Optional.empty() : Optional.of(String.join(" ", words));
+    }
+
+    private static boolean isUnit(String word) {
+        return UNITS.contains(word) || UNITS.contains(singular(word));
+    }
+
+    /**
+     * Lowercases with the Turkish dotted and dotless i in mind, then strips
+     * accents so "Soğan" and "sogan" compare equal.
+     */
+    static String fold(String text) {
+        String lower = text.replace('I', 'ı').replace('İ', 'i').toLowerCase(Locale.ROOT).replace('ı', 'i');
+        return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /**
+     * Crude singular form for English and Turkish plurals. It only needs to be
+     * consistent, not linguistically exact.
+     */
+    private static String singular(String word) {
+        if (word.length() > 5 && (word.endsWith("lar") || word.endsWith("ler"))) {
+            return word.substring(0, word.length() - 3);
+        }
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 4 && word.endsWith("oes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
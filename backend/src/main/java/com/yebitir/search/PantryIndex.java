@@ -0,0 +1,218 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index from normalized ingredient names to the recipes
+ * using them, for "what can I cook with what I have" searches.
+ * <p>
+ * Every distinct ingredient of a recipe gets a slot number, and each name maps
+ * to a {@link BitSet} of slots. A pantry query ORs the bit sets of its items
+ * and counts the set slots per recipe, so it touches only postings of the
+ * pantry items and never the recipe text. A slot is listed under the
+ * ingredient's full name and under its last word, so "oil" in a pantry covers
+ * "olive oil" but not the other way round. Slots of removed or re-indexed
+ * recipes go on a free list and are handed out again, so the slot range only
+ * grows with the number of ingredients actually indexed.
+ */
+@Component
+public class PantryIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final BitSet freeSlots = new BitSet();
+    private long[] slotRecipes = new long[1024];
+    private int slotCount;
+
+    /**
+     * Adds or replaces a recipe. Reads its ingredients, so it must be called
+     * while those can still be loaded.
+     */
+    public void index(Recipe recipe) {
+        Set<String> ingredients = new LinkedHashSet<>();
+        if (recipe.getIngredients() != null) {
+            for (String ingredient : recipe.getIngredients()) {
+                IngredientNormalizer.normalize(ingredient).ifPresent(ingredients::add);
+            }
+        }
+        Long ownerId = recipe.getOwner() != null ? recipe.getOwner().getId() : null;
+        boolean active = Boolean.TRUE.equals(recipe.getActive());
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipe.getId());
+            if (ingredients.isEmpty()) {
+                return;
+            }
+            int[] slots = new int[ingredients.size()];
+            List<Posting> keys = new ArrayList<>();
+            int i = 0;
+            for (String ingredient : ingredients) {
+                int slot = allocateSlot(recipe.getId());
+                slots[i++] = slot;
+                addPosting(ingredient, slot, keys);
+                String headWord = ingredient.substring(ingredient.lastIndexOf(' ') + 1);
+                if (!headWord.equals(ingredient)) {
+                    addPosting(headWord, slot, keys);
+                }
+            }
+            entries.put(recipe.getId(), new Entry(ownerId, active, slots, keys));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByOwner(Long ownerId) {
+        lock.writeLock().lock();
+        try {
+            List<Long> owned = entries.entrySet().stream()
+                    .filter(e -> ownerId.equals(e.getValue().ownerId()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            owned.forEach(this::removeLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entries.clear();
+            freeSlots.clear();
+            slotRecipes = new long[1024];
+            slotCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks published recipes by the fraction of their ingredients found in
+     * the pantry, then by the number found, newest id first on ties.
+     *
+     * @param minCoverage Drops recipes below this fraction, between 0 and 1
+     */
+    public List<PantryMatch> match(Collection<String> pantry, double minCoverage, int limit) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String item : pantry) {
+            IngredientNormalizer.normalize(item).ifPresent(names::add);
+        }
+
+        Map<Long, Integer> matchedByRecipe = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            BitSet slots = new BitSet();
+            for (String name : names) {
+                BitSet posting = postings.get(name);
+                if (posting != null) {
+                    slots.or(posting);
+                }
+            }
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                matchedByRecipe.merge(slotRecipes[slot], 1, Integer::sum);
+            }
+
+            List<PantryMatch> matches = new ArrayList<>();
+            for (Map.Entry<Long, Integer> matched : matchedByRecipe.entrySet()) {
+                Entry entry = entries.get(matched.getKey());
+                if (entry == null || !entry.active()) {
+                    continue;
+                }
+                PantryMatch match = new PantryMatch(matched.getKey(), matched.getValue(), entry.slots().length);
+                if (match.coverage() >= minCoverage) {
+                    matches.add(match);
+                }
+            }
+            matches.sort(Comparator.comparingDouble(PantryMatch::coverage).reversed()
+                    .thenComparing(Comparator.comparingInt(PantryMatch::matchedIngredients).reversed())
+                    .thenComparing(Comparator.comparing(PantryMatch::recipeId).reversed()));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The number of slots ever handed out, free or in use.
+     */
+    int slotCount() {
+        lock.readLock().lock();
+        try {
+            return slotCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocateSlot(Long recipeId) {
+        int free = freeSlots.nextSetBit(0);
+        if (free >= 0) {
+            freeSlots.clear(free);
+            slotRecipes[free] = recipeId;
+            return free;
+        }
+        if (slotCount == slotRecipes.length) {
+            long[] grown = new long[slotRecipes.length * 2];
+            System.arraycopy(slotRecipes, 0, grown, 0, slotCount);
+            slotRecipes = grown;
+        }
+        slotRecipes[slotCount] = recipeId;
+        return slotCount++;
+    }
+
+    private void addPosting(String name, int slot, List<Posting> keys) {
+        postings.computeIfAbsent(name, k -> new BitSet()).set(slot);
+        keys.add(new Posting(name, slot));
+    }
+
+    private void removeLocked(Long recipeId) {
+        Entry entry = entries.remove(recipeId);
+        if (entry == null) {
+            return;
+        }
+        for (Posting key : entry.keys()) {
+            BitSet posting = postings.get(key.name());
+            posting.clear(key.slot());
+            if (posting.isEmpty()) {
+                postings.remove(key.name());
+            }
+        }
+        for (int slot : entry.slots()) {
+            freeSlots.set(slot);
+        }
+    }
+
+    /**
+     * A recipe's ingredients occupy one slot each, listed under {@code keys}.
+     */
+    private record Entry(Long ownerId, boolean active, int[] slots, List<Posting> keys) {
+    }
+
+    private record Posting(String name, int slot) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.yebitir.search;
+
+/**
+ * A recipe that can be cooked, at least partly, from a pantry.
+ *
+ * @param matchedIngredients Distinct recipe ingredients found in the pantry
+ * @param totalIngredients   Distinct recipe ingredients
+ */
+public record PantryMatch(Long recipeId, int matchedIngredients, int totalIngredients) {
+
+    public double coverage() {
+        return (double) matchedIngredients / totalIngredients;
+    }
+}
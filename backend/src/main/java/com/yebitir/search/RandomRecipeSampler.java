@@ -0,0 +1,136 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Draws random published recipes without asking the database to shuffle the
+ * table. The ids of published recipes are kept in a dense array (removal
+ * swaps the last id into the gap) and k distinct positions are picked with
+ * Floyd's algorithm, which costs O(k) whatever the catalog size.
+ */
+@Component
+public class RandomRecipeSampler {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private final Map<Long, Long> owners = new HashMap<>();
+    private long[] ids = new long[1024];
+    private int size;
+
+    /**
+     * Adds a published recipe, or removes one that is no longer published.
+     */
+    public void index(Recipe recipe) {
+        if (!Boolean.TRUE.equals(recipe.getActive())) {
+            delete(recipe.getId());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (recipe.getOwner() != null) {
+                owners.put(recipe.getId(), recipe.getOwner().getId());
+            }
+            if (positions.containsKey(recipe.getId())) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = recipe.getId();
+            positions.put(recipe.getId(), size++);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByOwner(Long ownerId) {
+        lock.writeLock().lock();
+        try {
+            List<Long> owned = new ArrayList<>();
+            owners.forEach((recipeId, owner) -> {
+                if (owner.equals(ownerId)) {
+                    owned.add(recipeId);
+                }
+            });
+            owned.forEach(this::removeLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            positions.clear();
+            owners.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param excludeId Recipe never to return, e.g. the one being viewed; may be null
+     * @return Up to {@code count} distinct recipe ids in random order
+     */
+    public List<Long> sample(int count, Long excludeId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        lock.readLock().lock();
+        try {
+            Integer excluded = excludeId != null ? positions.get(excludeId) : null;
+            // Positions are drawn from a range without the excluded one and shifted past it
+            int n = excluded != null ? size - 1 : size;
+            int k = Math.min(count, n);
+
+            Set<Integer> chosen = new HashSet<>(k * 2);
+            for (int j = n - k; j < n; j++) {
+                int t = random.nextInt(j + 1);
+                chosen.add(chosen.contains(t) ? j : t);
+            }
+
+            List<Long> sample = new ArrayList<>(k);
+            for (int position : chosen) {
+                sample.add(ids[excluded != null && position >= excluded ? position + 1 : position]);
+            }
+            // Floyd's algorithm picks a uniform set but not a uniform order
+            Collections.shuffle(sample, random);
+            return sample;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long recipeId) {
+        owners.remove(recipeId);
+        Integer position = positions.remove(recipeId);
+        if (position == null) {
+            return;
+        }
+        long last = ids[--size];
+        if (position < size) {
+            ids[position] = last;
+            positions.put(last, position);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.yebitir.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.miscellaneous.KeywordRepeatFilter;
+import org.apache.lucene.analysis.miscellaneous.RemoveDuplicatesTokenFilter;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tr.ApostropheFilter;
+import org.apache.lucene.analysis.tr.TurkishAnalyzer;
+import org.apache.lucene.analysis.tr.TurkishLowerCaseFilter;
+import org.tartarus.snowball.ext.TurkishStemmer;
+
+/**
+ * Lucene's Turkish analysis chain (suffix-after-apostrophe removal, dotted and
+ * dotless i aware lowercasing, stop words and stemming) followed by ASCII
+ * folding, so "cig kofte" finds "Çiğ Köfte" and "Domates'li" matches "domates".
+ */
+class RecipeAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer source = new StandardTokenizer();
+        TokenStream result = new ApostropheFilter(source);
+        result = new TurkishLowerCaseFilter(result);
+        result = new StopFilter(result, TurkishAnalyzer.getDefaultStopSet());
+        // The stemmer needs the Turkish letters, so it runs before folding; the
+        // unstemmed word is kept alongside for queries typed without them
+        result = new KeywordRepeatFilter(result);
+        result = new SnowballFilter(result, new TurkishStemmer());
+        result = new ASCIIFoldingFilter(result);
+        result = new RemoveDuplicatesTokenFilter(result);
+        return new TokenStreamComponents(source, result);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new TurkishLowerCaseFilter(in));
+    }
+}
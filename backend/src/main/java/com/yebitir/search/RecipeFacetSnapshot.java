@@ -0,0 +1,364 @@
+package com.yebitir.search;
+
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.model.Recipe;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Column-oriented in-memory copy of the browse attributes of published
+ * recipes, for facet counts. Each recipe is a row; string attributes are
+ * dictionary encoded with a {@link BitSet} of rows per value, numbers are kept
+ * in primitive arrays. Rows of removed recipes are reused.
+ * <p>
+ * Counts are disjunctive: each facet is counted under every filter except its
+ * own, so the other values of an already filtered facet keep their counts and
+ * the UI can offer them as alternatives.
+ */
+@Component
+public class RecipeFacetSnapshot {
+    public static final String CUISINE = "cuisine";
+    public static final String MEAL_TYPE = "mealType";
+    public static final String DIET = "diet";
+    public static final String MAIN_INGREDIENT = "mainIngredient";
+    public static final String SERVINGS = "servings";
+    public static final String MAX_COOKING_TIME = "maxCookingTime";
+
+    /** Upper bounds of the cooking time buckets, matching the {@code maxCookingTime} filter. */
+    private static final int[] COOKING_TIME_BUCKETS = { 15, 30, 45, 60, 90, 120 };
+    private static final String MIN_RATING = "minRating";
+    private static final int NONE = -1;
+    private static final int INITIAL_ROWS = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> rowsByRecipe = new HashMap<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, StringColumn> stringColumns = new LinkedHashMap<>();
+    private long[] recipeIds = new long[INITIAL_ROWS];
+    private long[] ownerIds = new long[INITIAL_ROWS];
+    private int[] servings = new int[INITIAL_ROWS];
+    private int[] timeInMins = new int[INITIAL_ROWS];
+    private float[] ratings = new float[INITIAL_ROWS];
+    private int rowCount;
+
+    public RecipeFacetSnapshot() {
+        stringColumns.put(CUISINE, new StringColumn(Recipe::getCuisine));
+        stringColumns.put(MEAL_TYPE, new StringColumn(Recipe::getMealType));
+        stringColumns.put(DIET, new StringColumn(Recipe::getDiet));
+        stringColumns.put(MAIN_INGREDIENT, new StringColumn(Recipe::getMainIngredient));
+    }
+
+    /**
+     * Adds or replaces a recipe; unpublished recipes are removed.
+     */
+    public void index(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipe.getId());
+            if (!Boolean.TRUE.equals(recipe.getActive())) {
+                return;
+            }
+            int row = allocateRow();
+            rowsByRecipe.put(recipe.getId(), row);
+            recipeIds[row] = recipe.getId();
+            ownerIds[row] = recipe.getOwner() != null ? recipe.getOwner().getId() : NONE;
+            servings[row] = recipe.getServings() != null ? recipe.getServings() : NONE;
+            timeInMins[row] = recipe.getTimeInMins() != null ? recipe.getTimeInMins() : NONE;
+            ratings[row] = recipe.getRating() != null ? recipe.getRating() : 0f;
+            for (StringColumn column : stringColumns.values()) {
+                column.set(row, column.getter.apply(recipe));
+            }
+            live.set(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateRating(Long recipeId, Float rating) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsByRecipe.get(recipeId);
+            if (row != null) {
+                ratings[row] = rating != null ? rating : 0f;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByOwner(Long ownerId) {
+        lock.writeLock().lock();
+        try {
+            for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+                if (ownerIds[row] == ownerId) {
+                    removeLocked(recipeIds[row]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            rowsByRecipe.clear();
+            freeRows.clear();
+            live.clear();
+            stringColumns.values().forEach(StringColumn::clear);
+            rowCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts published recipes per value of every facet under the given
+     * filter. The text query is not applied here; full-text searches return
+     * their own facet counts.
+     */
+    public FacetCounts count(RecipeFilterDTO filter) {
+        lock.readLock().lock();
+        try {
+            Map<String, BitSet> filters = new LinkedHashMap<>();
+            for (Map.Entry<String, StringColumn> column : stringColumns.entrySet()) {
+                String value = valueOf(filter, column.getKey());
+                if (value != null && !value.isBlank()) {
+                    filters.put(column.getKey(), column.getValue().rowsWith(value));
+                }
+            }
+            if (filter.getServings() != null) {
+                int wanted = filter.getServings();
+                filters.put(SERVINGS, scan(row -> servings[row] == wanted));
+            }
+            if (filter.getMaxCookingTime() != null) {
+                int max = filter.getMaxCookingTime();
+                filters.put(MAX_COOKING_TIME, scan(row -> timeInMins[row] != NONE && timeInMins[row] <= max));
+            }
+            if (filter.getMinRating() != null) {
+                float min = filter.getMinRating();
+                filters.put(MIN_RATING, scan(row -> ratings[row] >= min));
+            }
+
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            for (Map.Entry<String, StringColumn> column : stringColumns.entrySet()) {
+                facets.put(column.getKey(), column.getValue().count(matchingExcept(filters, column.getKey())));
+            }
+            facets.put(SERVINGS, countServings(matchingExcept(filters, SERVINGS)));
+            facets.put(MAX_COOKING_TIME, countCookingTimes(matchingExcept(filters, MAX_COOKING_TIME)));
+            return new FacetCounts(matchingExcept(filters, null).cardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String valueOf(RecipeFilterDTO filter, String facet) {
+        switch (facet) {
+            case CUISINE:
+                return filter.getCuisine();
+            case MEAL_TYPE:
+                return filter.getMealType();
+            case DIET:
+                return filter.getDiet();
+            default:
+                return filter.getMainIngredient();
+        }
+    }
+
+    /**
+     * Live rows passing every filter but the named one; null applies them all.
+     */
+    private BitSet matchingExcept(Map<String, BitSet> filters, String excluded) {
+        BitSet rows = (BitSet) live.clone();
+        for (Map.Entry<String, BitSet> filter : filters.entrySet()) {
+            if (!filter.getKey().equals(excluded)) {
+                rows.and(filter.getValue());
+            }
+        }
+        return rows;
+    }
+
+    private BitSet scan(RowPredicate predicate) {
+        BitSet rows = new BitSet(rowCount);
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (predicate.test(row)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private Map<String, Long> countServings(BitSet rows) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (servings[row] != NONE) {
+                counts.merge(servings[row], 1L, Long::sum);
+            }
+        }
+        Map<String, Long> labelled = new LinkedHashMap<>();
+        counts.forEach((value, count) -> labelled.put(value.toString(), count));
+        return labelled;
+    }
+
+    /**
+     * Cumulative counts: the "30" bucket holds every recipe ready within 30
+     * minutes, i.e. what {@code maxCookingTime=30} would return.
+     */
+    private Map<String, Long> countCookingTimes(BitSet rows) {
+        long[] counts = new long[COOKING_TIME_BUCKETS.length];
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int time = timeInMins[row];
+            if (time == NONE) {
+                continue;
+            }
+            for (int bucket = COOKING_TIME_BUCKETS.length - 1; bucket >= 0; bucket--) {
+                if (time > COOKING_TIME_BUCKETS[bucket]) {
+                    break;
+                }
+                counts[bucket]++;
+            }
+        }
+        Map<String, Long> labelled = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < COOKING_TIME_BUCKETS.length; bucket++) {
+            labelled.put(Integer.toString(COOKING_TIME_BUCKETS[bucket]), counts[bucket]);
+        }
+        return labelled;
+    }
+
+    private int allocateRow() {
+        if (!freeRows.isEmpty()) {
+            return freeRows.pop();
+        }
+        if (rowCount == recipeIds.length) {
+            int size = rowCount * 2;
+            recipeIds = Arrays.copyOf(recipeIds, size);
+            ownerIds = Arrays.copyOf(ownerIds, size);
+            servings = Arrays.copyOf(servings, size);
+            timeInMins = Arrays.copyOf(timeInMins, size);
+            ratings = Arrays.copyOf(ratings, size);
+            stringColumns.values().forEach(column -> column.grow(size));
+        }
+        return rowCount++;
+    }
+
+    private void removeLocked(Long recipeId) {
+        Integer row = rowsByRecipe.remove(recipeId);
+        if (row == null) {
+            return;
+        }
+        live.clear(row);
+        for (StringColumn column : stringColumns.values()) {
+            column.set(row, null);
+        }
+        freeRows.push(row);
+    }
+
+    @FunctionalInterface
+    private interface RowPredicate {
+        boolean test(int row);
+    }
+
+    /**
+     * Dictionary-encoded string attribute. Values compare case-insensitively,
+     * like the database collation, and are reported as first seen.
+     */
+    private static final class StringColumn {
+        private final Function<Recipe, String> getter;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<BitSet> rows = new ArrayList<>();
+        private int[] values = new int[INITIAL_ROWS];
+
+        StringColumn(Function<Recipe, String> getter) {
+            this.getter = getter;
+            Arrays.fill(values, NONE);
+        }
+
+        void set(int row, String value) {
+            if (values[row] != NONE) {
+                rows.get(values[row]).clear(row);
+            }
+            if (value == null || value.isBlank()) {
+                values[row] = NONE;
+                return;
+            }
+            int code = codes.computeIfAbsent(normalize(value), key -> {
+                labels.add(value.trim());
+                rows.add(new BitSet());
+                return labels.size() - 1;
+            });
+            values[row] = code;
+            rows.get(code).set(row);
+        }
+
+        BitSet rowsWith(String value) {
+            Integer code = codes.get(normalize(value));
+            return code != null ? rows.get(code) : new BitSet();
+        }
+
+        /**
+         * @return Non-zero counts, largest first
+         */
+        Map<String, Long> count(BitSet matching) {
+            long[] counts = new long[labels.size()];
+            for (int row = matching.nextSetBit(0); row >= 0; row = matching.nextSetBit(row + 1)) {
+                if (values[row] != NONE) {
+                    counts[values[row]]++;
+                }
+            }
+            List<Integer> present = new ArrayList<>();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    present.add(code);
+                }
+            }
+            present.sort((a, b) -> counts[a] != counts[b]
+                    ? Long.compare(counts[b], counts[a])
+                    : labels.get(a).compareTo(labels.get(b)));
+            Map<String, Long> labelled = new LinkedHashMap<>();
+            present.forEach(code -> labelled.put(labels.get(code), counts[code]));
+            return labelled;
+        }
+
+        void grow(int size) {
+            int previous = values.length;
+            values = Arrays.copyOf(values, size);
+            Arrays.fill(values, previous, size, NONE);
+        }
+
+        void clear() {
+            codes.clear();
+            labels.clear();
+            rows.clear();
+            Arrays.fill(values, NONE);
+        }
+
+        private static String normalize(String value) {
+            return value.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
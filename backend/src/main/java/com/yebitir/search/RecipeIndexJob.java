@@ -0,0 +1,154 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.repository.RecipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the recipe indexes from the database at startup. The in-memory
+ * indexes are always built. The persistent {@link RecipeSearchIndex} is only
+ * rebuilt when:
+ * <ul>
+ * <li>ratings or sort keys were backfilled in the database,</li>
+ * <li>it was not closed cleanly or has an older layout, or</li>
+ * <li>it holds a different number of recipes than the database.</li>
+ * </ul>
+ * Recipes are read in id order, a batch per transaction with its collections
+ * fetched in bulk.
+ * <p>
+ * Runs as a lifecycle phase ahead of the web server, so no request is served
+ * before every index is complete and a partly rebuilt search index is never
+ * searched.
+ */
+@Component
+@Slf4j
+public class RecipeIndexJob implements SmartLifecycle {
+    // The web server starts one phase step below graceful shutdown
+    private static final int PHASE = WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+
+    private final RecipeSearchIndex searchIndex;
+    private final PantryIndex pantryIndex;
+    private final SuggestIndex suggestIndex;
+    private final RecipeFacetSnapshot facetSnapshot;
+    private final RandomRecipeSampler randomSampler;
+    private final SuggestedRecipeRanking suggestedRanking;
+    private final RecipeRepository recipeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private volatile boolean running;
+
+    @Autowired
+    public RecipeIndexJob(RecipeSearchIndex searchIndex, PantryIndex pantryIndex, SuggestIndex suggestIndex,
+            RecipeFacetSnapshot facetSnapshot, RandomRecipeSampler randomSampler,
+            SuggestedRecipeRanking suggestedRanking, RecipeRepository recipeRepository,
+            TransactionTemplate transactionTemplate, @Value("${search.index.batch-size:200}") int batchSize) {
+        this.searchIndex = searchIndex;
+        this.pantryIndex = pantryIndex;
+        this.suggestIndex = suggestIndex;
+        this.facetSnapshot = facetSnapshot;
+        this.randomSampler = randomSampler;
+        this.suggestedRanking = suggestedRanking;
+        this.recipeRepository = recipeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void start() {
+        try {
+            indexAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index recipes", e);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void indexAll() throws IOException {
+        int backfilled = recipeRepository.backfillRatings();
+        if (backfilled > 0) {
+            log.info("Aggregated comment ratings of {} recipes", backfilled);
+        }
+        int keyed = recipeRepository.backfillSortKeys();
+        if (keyed > 0) {
+            log.info("Updated the sort keys of {} recipes", keyed);
+        }
+        long recipes = recipeRepository.count();
+        boolean rebuildSearch = backfilled > 0 || keyed > 0 || !searchIndex.isUpToDate() || searchIndex.size() != recipes;
+        if (rebuildSearch) {
+            log.info("Rebuilding recipe search index ({} indexed, {} in database, up to date: {})",
+                    searchIndex.size(), recipes, searchIndex.isUpToDate());
+            searchIndex.clear();
+        }
+        pantryIndex.clear();
+        suggestIndex.clear();
+        facetSnapshot.clear();
+        randomSampler.clear();
+        suggestedRanking.clear();
+
+        long afterId = 0L;
+        int indexed = 0;
+        while (true) {
+            long cursor = afterId;
+            List<Long> ids = transactionTemplate.execute(status -> indexBatch(cursor, rebuildSearch));
+            if (ids.isEmpty()) {
+                break;
+            }
+            indexed += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        if (rebuildSearch) {
+            searchIndex.finishRebuild();
+        }
+        log.info("Indexed {} recipes", indexed);
+    }
+
+    private List<Long> indexBatch(long afterId, boolean rebuildSearch) {
+        List<Recipe> batch = recipeRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(batchSize));
+        if (!batch.isEmpty()) {
+            recipeRepository.fetchIngredients(batch);
+            recipeRepository.fetchInstructions(batch);
+        }
+        try {
+            for (Recipe recipe : batch) {
+                pantryIndex.index(recipe);
+                suggestIndex.index(recipe);
+                facetSnapshot.index(recipe);
+                randomSampler.index(recipe);
+                suggestedRanking.index(recipe);
+                if (rebuildSearch) {
+                    searchIndex.add(recipe);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batch.stream().map(Recipe::getId).collect(Collectors.toList());
+    }
+}
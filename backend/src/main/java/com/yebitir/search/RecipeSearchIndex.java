@@ -0,0 +1,509 @@
+package com.yebitir.search;
+
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.model.Recipe;
+import com.yebitir.repository.RecipeSort;
+import com.yebitir.util.RecipeCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.NumericUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embedded Lucene index over recipe text (title, description, ingredients and
+ * instructions) plus the filterable attributes, persisted under
+ * {@code search.index.dir}. Full-text searches are answered here with BM25
+ * ranking and facet counts; the database then only loads the page of
+ * summaries by id. {@link com.yebitir.service.RecipeService} keeps the index
+ * in step with every recipe write and {@link RecipeIndexJob} rebuilds it when
+ * it has drifted from the table.
+ * <p>
+ * Writes are visible to searches at once through near-real-time readers but
+ * only committed every {@code search.index.commit-interval-ms} and at
+ * shutdown. Every commit but the one at shutdown is marked unclean, so after
+ * a crash the index is known to have lost writes and gets rebuilt. Commits
+ * also record {@link #SCHEMA_VERSION}, so an index with an older document
+ * layout is rebuilt too.
+ * <p>
+ * The rating lives only in doc values, so a new rating is an in-place
+ * doc-values update rather than a re-index of the recipe text.
+ */
+@Component
+@Slf4j
+public class RecipeSearchIndex {
+    static final String ID = "id";
+    static final String OWNER_ID = "ownerId";
+    static final String TITLE = "title";
+    static final String DESCRIPTION = "description";
+    static final String INGREDIENTS = "ingredients";
+    static final String INSTRUCTIONS = "instructions";
+    static final String CUISINE = "cuisine";
+    static final String MEAL_TYPE = "mealType";
+    static final String DIET = "diet";
+    static final String MAIN_INGREDIENT = "mainIngredient";
+    static final String SERVINGS = "servings";
+    static final String TIME_IN_MINS = "timeInMins";
+    static final String RATING = "rating";
+    static final String RATING_KEY = "ratingKey";
+    static final String TIME_KEY = "timeKey";
+    static final String ACTIVE = "active";
+    static final String DATE_CREATED = "dateCreated";
+
+    private static final String CLEAN_SHUTDOWN = "cleanShutdown";
+    private static final String SCHEMA = "schema";
+    /** Bump whenever the fields of {@link #toDocument} change. */
+    private static final String SCHEMA_VERSION = "3";
+
+    private static final String[] FACET_DIMENSIONS = { CUISINE, MEAL_TYPE, DIET };
+    private static final int MAX_FACET_VALUES = 20;
+
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(
+            TITLE, 3f,
+            INGREDIENTS, 2f,
+            DESCRIPTION, 1f,
+            INSTRUCTIONS, 0.5f);
+
+    private final RecipeAnalyzer analyzer = new RecipeAnalyzer();
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final boolean upToDate;
+    private volatile boolean rebuilding;
+    private volatile SortedSetDocValuesReaderState facetState;
+
+    public RecipeSearchIndex(@Value("${search.index.dir:search-index}") String indexDir) throws IOException {
+        this.directory = FSDirectory.open(Paths.get(indexDir));
+        Map<String, String> commitData = DirectoryReader.indexExists(directory)
+                ? SegmentInfos.readLatestCommit(directory).getUserData()
+                : Map.of();
+        this.upToDate = Boolean.parseBoolean(commitData.get(CLEAN_SHUTDOWN))
+                && SCHEMA_VERSION.equals(commitData.get(SCHEMA));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        config.setCommitOnClose(false);
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(writer, null);
+        commit(false);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        if (rebuilding) {
+            // Never leave a half-built index behind as if it were complete
+            writer.rollback();
+        } else {
+            commit(true);
+            writer.close();
+        }
+        directory.close();
+    }
+
+    /**
+     * Whether the index was last closed by a normal shutdown, so it holds
+     * every write made before it, and has the current document layout.
+     */
+    public boolean isUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * Commits writes made since the last commit. Rebuilds commit once they
+     * are complete instead.
+     */
+    @Scheduled(initialDelayString = "${search.index.commit-interval-ms:5000}",
+            fixedDelayString = "${search.index.commit-interval-ms:5000}")
+    public void commitChanges() {
+        if (rebuilding || !writer.isOpen() || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            commit(false);
+        } catch (IOException e) {
+            log.error("Failed to commit recipe search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds or replaces a recipe and makes the change searchable; it becomes
+     * durable with the next commit. Reads the recipe's ingredients and
+     * instructions, so it must be called while those can still be loaded.
+     */
+    public void index(Recipe recipe) {
+        try {
+            writer.updateDocument(new Term(ID, recipe.getId().toString()), toDocument(recipe));
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index recipe " + recipe.getId(), e);
+        }
+    }
+
+    /**
+     * Updates the rating a recipe is filtered by and the stored key it is
+     * sorted by.
+     */
+    public void updateRating(Long recipeId, Float rating, Integer ratingKey) {
+        float value = rating != null ? rating : 0f;
+        try {
+            writer.updateDocValues(new Term(ID, recipeId.toString()),
+                    new NumericDocValuesField(RATING, NumericUtils.floatToSortableInt(value)),
+                    new NumericDocValuesField(RATING_KEY, ratingKey != null ? ratingKey : 0));
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update rating of recipe " + recipeId, e);
+        }
+    }
+
+    public void delete(Long recipeId) {
+        deleteByTerm(new Term(ID, recipeId.toString()));
+    }
+
+    public void deleteByOwner(Long ownerId) {
+        deleteByTerm(new Term(OWNER_ID, ownerId.toString()));
+    }
+
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /*
+     * Bulk operations for rebuilds, which are neither committed nor made
+     * searchable until finishRebuild.
+     */
+
+    void clear() throws IOException {
+        rebuilding = true;
+        writer.deleteAll();
+    }
+
+    void add(Recipe recipe) throws IOException {
+        writer.addDocument(toDocument(recipe));
+    }
+
+    void finishRebuild() throws IOException {
+        commit(false);
+        rebuilding = false;
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    private void refresh() throws IOException {
+        if (!rebuilding) {
+            searcherManager.maybeRefreshBlocking();
+        }
+    }
+
+    private void commit(boolean clean) throws IOException {
+        writer.setLiveCommitData(Map.of(CLEAN_SHUTDOWN, String.valueOf(clean), SCHEMA, SCHEMA_VERSION).entrySet());
+        writer.commit();
+    }
+
+    /**
+     * Runs a full-text search combined with the other filters that are set.
+     *
+     * @param after         Cursor from the previous page, ordered by relevance or any other {@link RecipeSort}
+     * @param includeTotal  Whether to count every hit
+     * @param includeFacets Whether to count hits per cuisine, meal type and diet
+     */
+    public RecipeSearchResult search(RecipeFilterDTO filter, Boolean active, RecipeCursor after, int limit,
+            boolean includeTotal, boolean includeFacets) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                Query query = buildQuery(filter, active);
+                RecipeSort sort = after.getSort();
+                TopFieldDocs hits;
+                if (after.isFirstPage()) {
+                    hits = searcher.search(query, limit + 1, sortFor(sort), true);
+                } else {
+                    ScoreDoc afterDoc = afterDoc(after, searcher.getIndexReader().maxDoc());
+                    hits = searcher.searchAfter(afterDoc, query, limit + 1, sortFor(sort), true);
+                }
+
+                List<Long> ids = new ArrayList<>();
+                String nextCursor = null;
+                for (int i = 0; i < hits.scoreDocs.length; i++) {
+                    FieldDoc hit = (FieldDoc) hits.scoreDocs[i];
+                    if (i == limit) {
+                        FieldDoc last = (FieldDoc) hits.scoreDocs[limit - 1];
+                        nextCursor = RecipeCursor.encode(sort, cursorKey(sort, last), ids.get(limit - 1));
+                        break;
+                    }
+                    ids.add((Long) hit.fields[1]);
+                }
+
+                Long total = includeTotal ? (long) searcher.count(query) : null;
+                Map<String, Map<String, Long>> facets = includeFacets ? countFacets(searcher, query) : null;
+                return new RecipeSearchResult(ids, nextCursor, total, facets);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Recipe search failed", e);
+        }
+    }
+
+    private Document toDocument(Recipe recipe) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, recipe.getId().toString(), Field.Store.NO));
+        doc.add(new NumericDocValuesField(ID, recipe.getId()));
+        if (recipe.getOwner() != null) {
+            doc.add(new StringField(OWNER_ID, recipe.getOwner().getId().toString(), Field.Store.NO));
+        }
+
+        addText(doc, TITLE, recipe.getTitle());
+        addText(doc, DESCRIPTION, recipe.getDescription());
+        if (recipe.getIngredients() != null) {
+            recipe.getIngredients().forEach(ingredient -> addText(doc, INGREDIENTS, ingredient));
+        }
+        if (recipe.getInstructions() != null) {
+            recipe.getInstructions().forEach(instruction -> addText(doc, INSTRUCTIONS, instruction));
+        }
+
+        addKeyword(doc, CUISINE, recipe.getCuisine(), true);
+        addKeyword(doc, MEAL_TYPE, recipe.getMealType(), true);
+        addKeyword(doc, DIET, recipe.getDiet(), true);
+        addKeyword(doc, MAIN_INGREDIENT, recipe.getMainIngredient(), false);
+        doc.add(new StringField(ACTIVE, String.valueOf(Boolean.TRUE.equals(recipe.getActive())), Field.Store.NO));
+
+        if (recipe.getServings() != null) {
+            doc.add(new IntPoint(SERVINGS, recipe.getServings()));
+        }
+        if (recipe.getTimeInMins() != null) {
+            doc.add(new IntPoint(TIME_IN_MINS, recipe.getTimeInMins()));
+        }
+        float rating = recipe.getRating() != null ? recipe.getRating() : 0f;
+        doc.add(new NumericDocValuesField(RATING, NumericUtils.floatToSortableInt(rating)));
+
+        // The stored sort keys of the database listings
+        doc.add(new NumericDocValuesField(TIME_KEY,
+                recipe.getTimeKey() != null ? recipe.getTimeKey() : RecipeSort.UNKNOWN_TIME));
+        doc.add(new NumericDocValuesField(RATING_KEY, recipe.getRatingKey() != null ? recipe.getRatingKey() : 0));
+        if (recipe.getDateCreated() != null) {
+            doc.add(new NumericDocValuesField(DATE_CREATED, toMillis(recipe.getDateCreated())));
+        }
+
+        try {
+            return facetsConfig.build(doc);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private static void addKeyword(Document doc, String field, String value, boolean facet) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new StringField(field, value, Field.Store.NO));
+            if (facet) {
+                doc.add(new SortedSetDocValuesFacetField(field, value));
+            }
+        }
+    }
+
+    private Query buildQuery(RecipeFilterDTO filter, Boolean active) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query text = parser.parse(filter.getQuery().trim());
+        if (text == null) {
+            // Only stop words or operators
+            return new MatchNoDocsQuery();
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder().add(text, BooleanClause.Occur.MUST);
+        addTermFilter(query, CUISINE, filter.getCuisine());
+        addTermFilter(query, MEAL_TYPE, filter.getMealType());
+        addTermFilter(query, DIET, filter.getDiet());
+        addTermFilter(query, MAIN_INGREDIENT, filter.getMainIngredient());
+        if (active != null) {
+            addTermFilter(query, ACTIVE, active.toString());
+        }
+        if (filter.getServings() != null) {
+            query.add(IntPoint.newExactQuery(SERVINGS, filter.getServings()), BooleanClause.Occur.FILTER);
+        }
+        if (filter.getMaxCookingTime() != null) {
+            query.add(IntPoint.newRangeQuery(TIME_IN_MINS, Integer.MIN_VALUE, filter.getMaxCookingTime()),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (filter.getMinRating() != null) {
+            // Only checks the documents the text matched, so doc values suffice
+            query.add(NumericDocValuesField.newSlowRangeQuery(RATING,
+                    NumericUtils.floatToSortableInt(filter.getMinRating()), Integer.MAX_VALUE),
+                    BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    private static void addTermFilter(BooleanQuery.Builder query, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            query.add(new TermQuery(new Term(field, value.trim())), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    /**
+     * Every sort ends with the recipe id, which is also how hits are read back.
+     */
+    private static Sort sortFor(RecipeSort sort) {
+        switch (sort) {
+            case NEWEST:
+                return new Sort(new SortField(DATE_CREATED, SortField.Type.LONG, true),
+                        new SortField(ID, SortField.Type.LONG, true));
+            case TOP_RATED:
+                return new Sort(new SortField(RATING_KEY, SortField.Type.LONG, true),
+                        new SortField(ID, SortField.Type.LONG, true));
+            case QUICKEST:
+                return new Sort(new SortField(TIME_KEY, SortField.Type.LONG),
+                        new SortField(ID, SortField.Type.LONG));
+            default:
+                return new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.LONG, true));
+        }
+    }
+
+    private static Object cursorKey(RecipeSort sort, FieldDoc hit) {
+        Object key = hit.fields[0];
+        switch (sort) {
+            case NEWEST:
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) key), ZoneOffset.UTC);
+            case TOP_RATED:
+            case QUICKEST:
+                return ((Long) key).intValue();
+            default:
+                return key;
+        }
+    }
+
+    private static ScoreDoc afterDoc(RecipeCursor after, int maxDoc) {
+        Object key;
+        switch (after.getSort()) {
+            case NEWEST:
+                key = toMillis(after.getDateCreated());
+                break;
+            case TOP_RATED:
+            case QUICKEST:
+                key = ((Integer) after.getKey()).longValue();
+                break;
+            default:
+                key = after.getKey();
+        }
+        float score = key instanceof Float ? (Float) key : Float.NaN;
+        // Ties are fully broken by the id; the highest doc id excludes the cursor row itself
+        return new FieldDoc(maxDoc - 1, score, new Object[] { key, after.getId() });
+    }
+
+    private Map<String, Map<String, Long>> countFacets(IndexSearcher searcher, Query query) throws IOException {
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        SortedSetDocValuesReaderState state = facetState(searcher.getIndexReader());
+        SortedSetDocValuesFacetCounts counts = null;
+        if (state != null) {
+            FacetsCollector collector = searcher.search(query, new FacetsCollectorManager());
+            counts = new SortedSetDocValuesFacetCounts(state, collector);
+        }
+        for (String dimension : FACET_DIMENSIONS) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            FacetResult result = counts != null && hasDimension(state, dimension)
+                    ? counts.getTopChildren(MAX_FACET_VALUES, dimension)
+                    : null;
+            if (result != null) {
+                for (LabelAndValue labelAndValue : result.labelValues) {
+                    values.put(labelAndValue.label, labelAndValue.value.longValue());
+                }
+            }
+            facets.put(dimension, values);
+        }
+        return facets;
+    }
+
+    private static boolean hasDimension(SortedSetDocValuesReaderState state, String dimension) {
+        for (String indexed : state.getDims()) {
+            if (indexed.equals(dimension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Facet ordinals are per reader, so the state is rebuilt whenever a
+     * refresh produced a new one. Null while no recipe has a facet value.
+     */
+    private SortedSetDocValuesReaderState facetState(IndexReader reader) throws IOException {
+        SortedSetDocValuesReaderState state = facetState;
+        if (state != null && state.getReader() == reader) {
+            return state;
+        }
+        try {
+            state = new DefaultSortedSetDocValuesReaderState(reader, facetsConfig);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        facetState = state;
+        return state;
+    }
+
+    private void deleteByTerm(Term term) {
+        try {
+            writer.deleteDocuments(term);
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update recipe index", e);
+        }
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
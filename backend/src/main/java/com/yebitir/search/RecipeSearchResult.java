@@ -0,0 +1,14 @@
+package com.yebitir.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of search hits, as recipe ids in rank order.
+ *
+ * @param total  Exact number of hits, or null when not requested
+ * @param facets Hit counts per cuisine, meal type and diet, or null when not requested
+ */
+public record RecipeSearchResult(List<Long> ids, String nextCursor, Long total,
+        Map<String, Map<String, Long>> facets) {
+}
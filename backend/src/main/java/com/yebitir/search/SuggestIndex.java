@@ -0,0 +1,302 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix trie over the titles, cuisines and normalized ingredient
+ * names of published recipes, for typeahead.
+ * <p>
+ * Every node caches the {@link #MAX_SUGGESTIONS} heaviest suggestions below
+ * it, so a lookup is a walk down the prefix and a copy of that list, however
+ * many entries share the prefix. A change only recomputes the caches on the
+ * paths of the suggestions it touched, from the cached lists of their
+ * children. Titles and ingredient names are reachable from the start of each
+ * of their words, so "corba" completes to "Mercimek Çorbası".
+ * <p>
+ * A recipe's popularity, one plus its rating, is added to its title, cuisine
+ * and each of its ingredients; a suggestion's weight is the sum over the
+ * recipes that use it.
+ */
+@Component
+public class SuggestIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /** Keys are cut here; longer prefixes are matched on their first characters only. */
+    private static final int MAX_KEY_LENGTH = 40;
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+    private static final Comparator<Suggestion> HEAVIEST_FIRST = Comparator.comparingLong(Suggestion::weight)
+            .reversed()
+            .thenComparing(Suggestion::text)
+            .thenComparing(Suggestion::type);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<SuggestionKey, Long> weights = new HashMap<>();
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+
+    /**
+     * Adds, replaces or, for unpublished recipes, removes a recipe's suggestions.
+     */
+    public void index(Recipe recipe) {
+        Contribution contribution = Boolean.TRUE.equals(recipe.getActive()) ? contributionOf(recipe) : null;
+        lock.writeLock().lock();
+        try {
+            Set<SuggestionKey> changed = new LinkedHashSet<>();
+            Contribution previous = contributions.remove(recipe.getId());
+            if (previous != null) {
+                apply(previous, -1, changed);
+            }
+            if (contribution != null) {
+                contributions.put(recipe.getId(), contribution);
+                apply(contribution, 1, changed);
+            }
+            changed.forEach(this::refresh);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a recipe's suggestions to the popularity of its new rating.
+     */
+    public void updateRating(Long recipeId, Float rating) {
+        long popularity = popularityOf(rating);
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.get(recipeId);
+            if (previous == null || previous.popularity() == popularity) {
+                return;
+            }
+            Contribution updated = new Contribution(previous.ownerId(), popularity, previous.suggestions());
+            contributions.put(recipeId, updated);
+            Set<SuggestionKey> changed = new LinkedHashSet<>();
+            apply(previous, -1, changed);
+            apply(updated, 1, changed);
+            changed.forEach(this::refresh);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.remove(recipeId);
+            if (previous != null) {
+                Set<SuggestionKey> changed = new LinkedHashSet<>();
+                apply(previous, -1, changed);
+                changed.forEach(this::refresh);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByOwner(Long ownerId) {
+        lock.writeLock().lock();
+        try {
+            Set<SuggestionKey> changed = new LinkedHashSet<>();
+            contributions.values().removeIf(contribution -> {
+                if (!ownerId.equals(contribution.ownerId())) {
+                    return false;
+                }
+                apply(contribution, -1, changed);
+                return true;
+            });
+            changed.forEach(this::refresh);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.entries.clear();
+            root.top = List.of();
+            weights.clear();
+            contributions.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Up to {@code limit} suggestions starting with {@code prefix} at a
+     *         word boundary, heaviest first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = keyOf(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<Suggestion> top = node.top;
+            return top.size() > limit ? top.subList(0, limit) : top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Contribution contributionOf(Recipe recipe) {
+        long popularity = popularityOf(recipe.getRating());
+        Set<SuggestionKey> suggestions = new LinkedHashSet<>();
+        addIfPresent(suggestions, SuggestionType.TITLE, recipe.getTitle());
+        addIfPresent(suggestions, SuggestionType.CUISINE, recipe.getCuisine());
+        if (recipe.getIngredients() != null) {
+            for (String ingredient : recipe.getIngredients()) {
+                IngredientNormalizer.normalize(ingredient)
+                        .ifPresent(name -> suggestions.add(new SuggestionKey(SuggestionType.INGREDIENT, name)));
+            }
+        }
+        Long ownerId = recipe.getOwner() != null ? recipe.getOwner().getId() : null;
+        return new Contribution(ownerId, popularity, suggestions);
+    }
+
+    private static long popularityOf(Float rating) {
+        return 100 + (rating != null ? (long) Math.floor(rating * 100.0) : 0);
+    }
+
+    private static void addIfPresent(Set<SuggestionKey> suggestions, SuggestionType type, String text) {
+        if (text != null && !text.isBlank()) {
+            suggestions.add(new SuggestionKey(type, text.trim()));
+        }
+    }
+
+    private void apply(Contribution contribution, int sign, Set<SuggestionKey> changed) {
+        for (SuggestionKey suggestion : contribution.suggestions()) {
+            long weight = weights.getOrDefault(suggestion, 0L) + sign * contribution.popularity();
+            if (weight > 0) {
+                weights.put(suggestion, weight);
+            } else {
+                weights.remove(suggestion);
+            }
+            changed.add(suggestion);
+        }
+    }
+
+    /**
+     * Stores a suggestion's current weight under each of its keys, or removes
+     * it, and recomputes the cached lists from those keys back up to the root.
+     */
+    private void refresh(SuggestionKey suggestion) {
+        Long weight = weights.get(suggestion);
+        for (String key : keysOf(suggestion)) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = weight != null
+                        ? node.children.computeIfAbsent(key.charAt(i), c -> new Node())
+                        : node.children.get(key.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                path.add(node);
+            }
+            if (node == null) {
+                continue;
+            }
+            if (weight != null) {
+                node.entries.put(suggestion, new Suggestion(suggestion.type(), suggestion.text(), weight));
+            } else {
+                node.entries.remove(suggestion);
+            }
+            for (int depth = path.size() - 1; depth >= 0; depth--) {
+                Node current = path.get(depth);
+                current.recomputeTop();
+                if (depth > 0 && current.isEmpty()) {
+                    path.get(depth - 1).children.remove(key.charAt(depth - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * The full text plus, except for cuisines, the text from each later word on.
+     */
+    private static Set<String> keysOf(SuggestionKey suggestion) {
+        String key = keyOf(suggestion.text());
+        Set<String> keys = new LinkedHashSet<>();
+        if (key.isEmpty()) {
+            return keys;
+        }
+        keys.add(key);
+        if (suggestion.type() != SuggestionType.CUISINE) {
+            for (int i = key.indexOf(' '); i >= 0; i = key.indexOf(' ', i + 1)) {
+                keys.add(key.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+
+    private static String keyOf(String text) {
+        if (text == null) {
+            return "";
+        }
+        String key = SEPARATORS.matcher(IngredientNormalizer.fold(text)).replaceAll(" ").trim();
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final Map<SuggestionKey, Suggestion> entries = new HashMap<>(2);
+        private List<Suggestion> top = List.of();
+
+        boolean isEmpty() {
+            return children.isEmpty() && entries.isEmpty();
+        }
+
+        /**
+         * Merges this node's own entries with the children's cached lists. A
+         * suggestion reachable from several words can appear more than once.
+         */
+        void recomputeTop() {
+            List<Suggestion> candidates = new ArrayList<>(entries.values());
+            for (Node child : children.values()) {
+                candidates.addAll(child.top);
+            }
+            candidates.sort(HEAVIEST_FIRST);
+            Map<SuggestionKey, Suggestion> top = new LinkedHashMap<>();
+            for (Suggestion candidate : candidates) {
+                top.putIfAbsent(new SuggestionKey(candidate.type(), candidate.text()), candidate);
+                if (top.size() == MAX_SUGGESTIONS) {
+                    break;
+                }
+            }
+            this.top = List.copyOf(top.values());
+        }
+    }
+
+    private record SuggestionKey(SuggestionType type, String text) {
+    }
+
+    /**
+     * What one published recipe adds to the weights, kept to take it back out.
+     */
+    private record Contribution(Long ownerId, long popularity, Set<SuggestionKey> suggestions) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Published recipes ordered by a suggestion score, kept up to date as ratings
+ * and publication change, so the top entries are read without sorting.
+ * <p>
+ * The score is a Bayesian average of the rating, pulled towards
+ * {@code prior-rating} with the weight of {@code prior-weight} ratings, that
+ * halves every {@code half-life-days} of recipe age. It is stored as its
+ * logarithm measured against a fixed epoch, {@code ln(average) + ln 2 * days
+ * since epoch / half-life}, which orders recipes exactly like the decayed
+ * score at any moment and never changes while the recipe does not, so time
+ * passing never reorders the set.
+ * <p>
+ * The half-life decides how long a well-rated recipe holds its place against
+ * new, unrated ones, which start at the prior. With the defaults (prior 3.0
+ * with weight 5, half-life 180 days) a recipe rated 5 by ten people stays
+ * ahead of a new unrated one for about three months. With a 30-day half-life
+ * it would drop behind after about two weeks.
+ */
+@Component
+public class SuggestedRecipeRanking {
+    private static final Comparator<Ranked> BEST_FIRST = Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparing(Comparator.comparingLong(Ranked::recipeId).reversed());
+
+    private final double priorRating;
+    private final double priorWeight;
+    private final double halfLifeDays;
+    private final ConcurrentSkipListSet<Ranked> ranking = new ConcurrentSkipListSet<>(BEST_FIRST);
+    private final Map<Long, Ranked> byRecipe = new ConcurrentHashMap<>();
+
+    public SuggestedRecipeRanking(@Value("${recipes.suggested.prior-rating:3.0}") double priorRating,
+            @Value("${recipes.suggested.prior-weight:5}") double priorWeight,
+            @Value("${recipes.suggested.half-life-days:180}") double halfLifeDays) {
+        this.priorRating = priorRating;
+        this.priorWeight = priorWeight;
+        this.halfLifeDays = halfLifeDays;
+    }
+
+    /**
+     * Adds or re-scores a published recipe, or removes one that is no longer published.
+     */
+    public synchronized void index(Recipe recipe) {
+        removeLocked(recipe.getId());
+        if (Boolean.TRUE.equals(recipe.getActive())) {
+            Long ownerId = recipe.getOwner() != null ? recipe.getOwner().getId() : null;
+            double recency = recency(recipe.getDateCreated());
+            Ranked ranked = new Ranked(recipe.getId(), ownerId, recency,
+                    score(recipe.getRatingSum(), recipe.getRatingCount(), recency));
+            byRecipe.put(recipe.getId(), ranked);
+            ranking.add(ranked);
+        }
+    }
+
+    /**
+     * Re-scores a published recipe after its rating changed.
+     */
+    public synchronized void updateRating(Long recipeId, Double ratingSum, Integer ratingCount) {
+        Ranked previous = byRecipe.get(recipeId);
+        if (previous == null) {
+            return;
+        }
+        Ranked ranked = new Ranked(recipeId, previous.ownerId(), previous.recency(),
+                score(ratingSum, ratingCount, previous.recency()));
+        ranking.remove(previous);
+        byRecipe.put(recipeId, ranked);
+        ranking.add(ranked);
+    }
+
+    public synchronized void delete(Long recipeId) {
+        removeLocked(recipeId);
+    }
+
+    public synchronized void deleteByOwner(Long ownerId) {
+        List<Long> owned = new ArrayList<>();
+        byRecipe.values().forEach(ranked -> {
+            if (ownerId.equals(ranked.ownerId())) {
+                owned.add(ranked.recipeId());
+            }
+        });
+        owned.forEach(this::removeLocked);
+    }
+
+    synchronized void clear() {
+        ranking.clear();
+        byRecipe.clear();
+    }
+
+    /**
+     * @return Ids of the {@code count} best recipes, best first
+     */
+    public List<Long> top(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        Iterator<Ranked> iterator = ranking.iterator();
+        while (ids.size() < count && iterator.hasNext()) {
+            ids.add(iterator.next().recipeId());
+        }
+        return ids;
+    }
+
+    private double score(Double ratingSum, Integer ratingCount, double recency) {
+        int ratings = ratingCount != null ? ratingCount : 0;
+        double sum = ratings > 0 && ratingSum != null ? ratingSum : 0;
+        double average = (priorRating * priorWeight + sum) / (priorWeight + ratings);
+        return Math.log(Math.max(average, 1e-6)) + recency;
+    }
+
+    /**
+     * The score's time term, {@code ln 2 * days since epoch / half-life}.
+     */
+    private double recency(LocalDateTime dateCreated) {
+        LocalDateTime created = dateCreated != null ? dateCreated : LocalDateTime.now();
+        double daysSinceEpoch = created.toEpochSecond(ZoneOffset.UTC) / 86400.0;
+        return Math.log(2) * daysSinceEpoch / halfLifeDays;
+    }
+
+    private void removeLocked(Long recipeId) {
+        Ranked previous = byRecipe.remove(recipeId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    private record Ranked(Long recipeId, Long ownerId, double recency, double score) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.yebitir.search;
+
+/**
+ * A typeahead completion. {@code weight} is the summed popularity of the
+ * published recipes behind it.
+ */
+public record Suggestion(SuggestionType type, String text, long weight) {
+}
@@ -0,0 +1,10 @@
+package com.yebitir.search;
+
+/**
+ * What a typeahead suggestion completes to.
+ */
+public enum SuggestionType {
+    TITLE,
+    CUISINE,
+    INGREDIENT
+}
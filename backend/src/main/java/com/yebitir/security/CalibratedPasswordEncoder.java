@@ -0,0 +1,148 @@
+package com.yebitir.security;
+
+import com.yebitir.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt password encoder that hashes on a dedicated, bounded worker pool, so
+ * a burst of logins uses at most {@code security.password.pool-size} cores
+ * and {@code queue-capacity} waiting request threads. Hashes beyond that are
+ * rejected with a {@link TooManyRequestsException} rather than starving the
+ * rest of the API.
+ * <p>
+ * The cost factor is calibrated at startup to the highest one hashing within
+ * {@code security.password.target-hash-ms}, never below
+ * {@code min-strength}, unless {@code security.password.strength} fixes it.
+ * Hashes of a lower cost are reported by {@link #upgradeEncoding(String)},
+ * so they are rehashed on the user's next login. Hashes of a higher cost are
+ * kept, so instances that calibrated to different costs never rehash a
+ * password back and forth.
+ */
+@Component
+@Slf4j
+public class CalibratedPasswordEncoder implements PasswordEncoder {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final int MAX_STRENGTH = 16;
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+
+    public CalibratedPasswordEncoder(@Value("${security.password.strength:0}") int strength,
+            @Value("${security.password.min-strength:10}") int minStrength,
+            @Value("${security.password.target-hash-ms:100}") long targetHashMs,
+            @Value("${security.password.pool-size:2}") int poolSize,
+            @Value("${security.password.queue-capacity:20}") int queueCapacity) {
+        this.strength = strength > 0 ? strength : calibrate(minStrength, targetHashMs);
+        this.encoder = new BCryptPasswordEncoder(this.strength);
+        log.info("Hashing passwords with BCrypt cost {}", this.strength);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return Whether the hash was made with a lower cost than the current one
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hashes on the pool and waits for the result.
+     *
+     * @throws TooManyRequestsException if the pool is saturated
+     */
+    private <T> T execute(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue is full ({} queued), rejecting request", executor.getQueue().size());
+            throw new TooManyRequestsException("Too many sign-in attempts, please try again shortly");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to hash a password", e.getCause());
+        }
+    }
+
+    /**
+     * Times the minimum cost and raises it while the doubled time stays
+     * within the target.
+     */
+    private static int calibrate(int minStrength, long targetHashMs) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        String hash = probe.encode("calibration");
+        long fastestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            probe.matches("calibration", hash);
+            fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+        }
+
+        int calibrated = minStrength;
+        long hashNanos = fastestNanos;
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetHashMs);
+        while (calibrated < MAX_STRENGTH && hashNanos * 2 <= targetNanos) {
+            calibrated++;
+            hashNanos *= 2;
+        }
+        log.info("BCrypt cost {} takes {} ms, calibrated cost {} to a {} ms target", minStrength,
+                TimeUnit.NANOSECONDS.toMillis(fastestNanos), calibrated, targetHashMs);
+        return calibrated;
+    }
+}
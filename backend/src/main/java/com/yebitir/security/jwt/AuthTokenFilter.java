@@ -1,6 +1,10 @@
 package com.yebitir.security.jwt;
 
+import com.yebitir.security.services.TokenRevocations;
+import com.yebitir.security.services.TokenVersions;
+import com.yebitir.security.services.UserDetailsImpl;
 import com.yebitir.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +12,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,6 +21,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
@@ -24,6 +30,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenVersions tokenVersions;
+
+    @Autowired
+    private TokenRevocations tokenRevocations;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -31,10 +43,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUsernameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            Optional<Claims> claims = jwt != null ? jwtUtils.verifyAndExtract(jwt) : Optional.empty();
+            UserDetails userDetails = claims.isPresent() ? loadPrincipal(claims.get()) : null;
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -48,6 +59,35 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Builds the principal from the token's claims while the token's version
+     * is current and its id not revoked. Tokens issued before they carried the
+     * user id are resolved by username. Refresh tokens are not accepted.
+     *
+     * @return The principal, or null if the token has been revoked
+     */
+    private UserDetails loadPrincipal(Claims claims) {
+        Long userId = claims.get(JwtUtils.CLAIM_USER_ID, Long.class);
+        if (userId == null) {
+            UserDetails userDetails = userDetailsService.loadAuthenticatedUser(claims.getSubject());
+            if (!userDetails.isEnabled()) {
+                throw new DisabledException("User account is disabled: " + claims.getSubject());
+            }
+            return userDetails;
+        }
+
+        if (JwtUtils.TYPE_REFRESH.equals(claims.get(JwtUtils.CLAIM_TOKEN_TYPE, String.class))) {
+            return null;
+        }
+        Integer version = claims.get(JwtUtils.CLAIM_TOKEN_VERSION, Integer.class);
+        if (version == null || !tokenVersions.isCurrent(userId, version)
+                || tokenRevocations.isRevoked(claims.getId())) {
+            logger.debug("Rejected revoked token of user {}", userId);
+            return null;
+        }
+        return UserDetailsImpl.fromToken(userId, claims.getSubject(), claims.get(JwtUtils.CLAIM_ROLE, String.class));
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -1,64 +1,141 @@
 package com.yebitir.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
-import com.yebitir.security.services.UserDetailsImpl;
+import com.yebitir.model.User;
 
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    // Claims that let a request be authenticated without loading the user
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    public static final String CLAIM_TOKEN_TYPE = "typ";
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
 
-    @Value("${jwt.expiration}")
-    private int jwtExpirationMs;
+    private final long jwtExpirationMs;
+    private final long jwtRefreshExpirationMs;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    // Claims of recently verified tokens by token digest, each kept until its token expires
+    private final Cache<String, Claims> verifiedTokens;
 
-    public String generateJwtToken(Authentication authentication) {
-        UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+    public JwtUtils(@Value("${jwt.secret}") String jwtSecret,
+            @Value("${jwt.expiration}") long jwtExpirationMs,
+            @Value("${jwt.refresh-expiration:1209600000}") long jwtRefreshExpirationMs,
+            @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheSize) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.jwtRefreshExpirationMs = jwtRefreshExpirationMs;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+                        long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+                    }
 
+                    @Override
+                    public long expireAfterUpdate(String digest, Claims claims, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, Claims claims, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Issues a short-lived access token, which authenticates requests without
+     * loading the user.
+     */
+    public String generateJwtToken(User user) {
         return Jwts.builder()
-                .setSubject(userPrincipal.getUsername())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_TOKEN_TYPE, TYPE_ACCESS)
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLE, user.getRole().name())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)))
+                .signWith(signingKey)
                 .compact();
     }
 
-    public String generateJwtToken(String username) {
+    /**
+     * Issues a long-lived refresh token, which is only accepted by the refresh
+     * endpoint and can be used once.
+     */
+    public String generateRefreshToken(User user) {
         return Jwts.builder()
-                .setSubject(username)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_TOKEN_TYPE, TYPE_REFRESH)
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)))
+                .setExpiration(new Date((new Date()).getTime() + jwtRefreshExpirationMs))
+                .signWith(signingKey)
                 .compact();
     }
 
-    public String getUsernameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)))
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
     }
 
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Verifies a token and returns its claims. A token verified before is
+     * recognised by its SHA-256 digest and not parsed or verified again until
+     * it expires. The returned claims are shared and must not be modified.
+     *
+     * @return The claims, or empty if the token is invalid or expired
+     */
+    public Optional<Claims> verifyAndExtract(String authToken) {
+        String digest = digest(authToken);
+        Claims claims = verifiedTokens.getIfPresent(digest);
+        if (claims != null) {
+            return Optional.of(claims);
+        }
+
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)))
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
+            claims = parser.parseClaimsJws(authToken).getBody();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(digest, claims);
+            }
+            return Optional.of(claims);
         } catch (SecurityException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -71,6 +148,15 @@ public class JwtUtils {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return Optional.empty();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.yebitir.security.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yebitir.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Principals of recently authenticated users by the username or email they
+ * were loaded with, so authenticating a request by its token does not query
+ * the users table. Bounded to {@code security.principal-cache.max-size}
+ * entries with W-TinyLFU eviction and expired after
+ * {@code security.principal-cache.ttl-seconds}; changes to a user's
+ * credentials or status evict it at once.
+ */
+@Component
+public class PrincipalCache {
+    private final Cache<String, UserDetailsImpl> principals;
+
+    public PrincipalCache(@Value("${security.principal-cache.max-size:10000}") long maxSize,
+            @Value("${security.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public UserDetailsImpl get(String username, Function<String, UserDetailsImpl> loader) {
+        return principals.get(username, loader);
+    }
+
+    /**
+     * Evicts a user under both names it can be loaded by. Call it once the
+     * change is saved, so a concurrent load cannot cache the old state.
+     */
+    public void evict(User user) {
+        evict(user.getUsername(), user.getEmail());
+    }
+
+    public void evict(String username, String email) {
+        principals.invalidate(username);
+        principals.invalidate(email);
+    }
+}
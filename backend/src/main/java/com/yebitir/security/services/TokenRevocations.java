@@ -0,0 +1,215 @@
+package com.yebitir.security.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ids of tokens revoked before they expire, checked on every request instead
+ * of querying the database. Tokens of revoked ids are rejected even though
+ * their signature and version are valid.
+ * <p>
+ * Revoked ids are held in a bloom filter, which answers for the ids that are
+ * not revoked, backed by the exact set for the few the filter cannot rule
+ * out. Revocations are stored in the {@code revoked_tokens} table, so they
+ * survive restarts and reach other instances on their next refresh every
+ * {@code security.token-revocations.refresh-ms}. The refresh drops revocations
+ * of tokens that have expired and rebuilds the filter. The time of each
+ * revocation is kept, see {@link #revokedAt(String)}.
+ */
+@Component
+@Slf4j
+public class TokenRevocations {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int expectedSize;
+    private final Object writeLock = new Object();
+    private volatile Revoked revoked;
+
+    @Autowired
+    public TokenRevocations(JdbcTemplate jdbcTemplate,
+            @Value("${security.token-revocations.expected-size:100000}") int expectedSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedSize = expectedSize;
+        this.revoked = Revoked.of(Map.of(), expectedSize);
+    }
+
+    @PostConstruct
+    public void load() {
+        refresh();
+        log.info("Loaded {} token revocations", revoked.revocations.size());
+    }
+
+    @Scheduled(initialDelayString = "${security.token-revocations.refresh-ms:30000}",
+            fixedDelayString = "${security.token-revocations.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            jdbcTemplate.update("DELETE FROM revoked_tokens WHERE expires_at <= ?", new Timestamp(now));
+            Map<String, Revocation> revocations = new HashMap<>();
+            jdbcTemplate.query("SELECT jti, expires_at, revoked_at FROM revoked_tokens",
+                    rs -> {
+                        Timestamp revokedAt = rs.getTimestamp(3);
+                        revocations.put(rs.getString(1), new Revocation(rs.getTimestamp(2).getTime(),
+                                revokedAt != null ? revokedAt.getTime() : 0));
+                    });
+
+            synchronized (writeLock) {
+                // Keep revocations made since the query that have not expired
+                revoked.revocations.forEach((jti, revocation) -> {
+                    if (revocation.expiresAt() > now) {
+                        revocations.putIfAbsent(jti, revocation);
+                    }
+                });
+                revoked = Revoked.of(revocations, expectedSize);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to refresh token revocations: {}", e.getMessage());
+        }
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Revoked current = revoked;
+        return current.filter.mightContain(jti) && current.revocations.containsKey(jti);
+    }
+
+    /**
+     * Returns when a token id was revoked, as known to this instance. Ids that
+     * {@link #revoke(String, Date)} found already revoked are always known.
+     *
+     * @return The revocation time in epoch milliseconds, empty if not revoked
+     */
+    public OptionalLong revokedAt(String jti) {
+        Revocation revocation = jti != null ? revoked.revocations.get(jti) : null;
+        return revocation != null ? OptionalLong.of(revocation.revokedAt()) : OptionalLong.empty();
+    }
+
+    /**
+     * Revokes a token id until the token expires.
+     *
+     * @return Whether the id was revoked by this call, false if it already was
+     *         revoked here or by another instance
+     */
+    public boolean revoke(String jti, Date expiresAt) {
+        if (isRevoked(jti)) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean inserted;
+        long revokedAt = now;
+        try {
+            jdbcTemplate.update("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+                    jti, new Timestamp(expiresAt.getTime()), new Timestamp(now));
+            inserted = true;
+        } catch (DuplicateKeyException e) {
+            // Revoked by another instance, which may not have reached us yet
+            inserted = false;
+            revokedAt = jdbcTemplate.queryForList("SELECT revoked_at FROM revoked_tokens WHERE jti = ?",
+                    Timestamp.class, jti).stream()
+                    .filter(Objects::nonNull)
+                    .mapToLong(Timestamp::getTime)
+                    .findFirst()
+                    .orElse(0);
+        }
+        synchronized (writeLock) {
+            revoked.add(jti, new Revocation(expiresAt.getTime(), revokedAt));
+        }
+        return inserted;
+    }
+
+    private record Revocation(long expiresAt, long revokedAt) {
+    }
+
+    private record Revoked(BloomFilter filter, Map<String, Revocation> revocations) {
+        static Revoked of(Map<String, Revocation> revocations, int expectedSize) {
+            Revoked revoked = new Revoked(new BloomFilter(Math.max(expectedSize, revocations.size() * 2)),
+                    new ConcurrentHashMap<>());
+            revocations.forEach(revoked::add);
+            return revoked;
+        }
+
+        void add(String jti, Revocation revocation) {
+            revocations.putIfAbsent(jti, revocation);
+            filter.add(jti);
+        }
+    }
+
+    /**
+     * Bloom filter over strings, sized for an expected number of entries at
+     * {@link #FALSE_POSITIVE_RATE}. Safe for concurrent use.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final int bits;
+        private final int hashes;
+
+        BloomFilter(int expectedSize) {
+            int expected = Math.max(1, expectedSize);
+            double optimalBits = -expected * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2));
+            this.bits = (int) Math.min(Integer.MAX_VALUE - 64, Math.max(64, (long) Math.ceil(optimalBits)));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        void add(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashes; i++) {
+                int bit = bit(hash, i);
+                long mask = 1L << bit;
+                words.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashes; i++) {
+                int bit = bit(hash, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Double hashing: the i-th bit is derived from both halves of one hash
+        private int bit(long hash, int i) {
+            return Math.floorMod((int) hash + i * (int) (hash >>> 32), bits);
+        }
+
+        // 64-bit FNV-1a followed by the MurmurHash3 finalizer
+        private static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
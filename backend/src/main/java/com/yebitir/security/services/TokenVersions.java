@@ -0,0 +1,102 @@
+package com.yebitir.security.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The current token version of each user whose version was bumped within the
+ * refresh token lifetime, checked on every request instead of loading the
+ * user. Tokens are accepted only while the version they were issued with is
+ * current.
+ * <p>
+ * Every token issued under an older version expires within that lifetime of
+ * the bump, so a user without an entry accepts any version and entries are
+ * dropped once their bump is that old. Versions only grow, so changes made by
+ * this instance apply at once and changes made by other instances are merged
+ * in every {@code security.token-versions.refresh-ms} from the users whose
+ * {@code token_version_changed_at} is newer than the previous refresh. Deleted
+ * users are revoked here until their tokens have expired, but other instances
+ * keep accepting their tokens until then.
+ */
+@Component
+@DependsOn("entityManagerFactory") // The schema is updated first
+@Slf4j
+public class TokenVersions {
+    private static final int REVOKED = Integer.MAX_VALUE;
+    // Changes are read again for this long, in case they committed late or were stamped by a clock behind ours
+    private static final long REFRESH_OVERLAP_MS = 60_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long retentionMs;
+    private final Map<Long, Version> versions = new ConcurrentHashMap<>();
+    // Start of the last successful refresh, 0 before the first
+    private volatile long refreshedAt;
+
+    @Autowired
+    public TokenVersions(JdbcTemplate jdbcTemplate,
+            @Value("${jwt.refresh-expiration:1209600000}") long retentionMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionMs = retentionMs;
+    }
+
+    @PostConstruct
+    public void load() {
+        refresh();
+        log.info("Loaded token versions of {} users", versions.size());
+    }
+
+    @Scheduled(initialDelayString = "${security.token-versions.refresh-ms:30000}",
+            fixedDelayString = "${security.token-versions.refresh-ms:30000}")
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        long since = refreshedAt > 0 ? refreshedAt - REFRESH_OVERLAP_MS : now - retentionMs;
+        try {
+            jdbcTemplate.query("SELECT id, token_version, token_version_changed_at FROM users " +
+                    "WHERE token_version_changed_at > ? AND token_version > 0",
+                    rs -> {
+                        merge(rs.getLong(1), new Version(rs.getInt(2), rs.getTimestamp(3).getTime()));
+                    },
+                    new Timestamp(since));
+            refreshedAt = now;
+        } catch (DataAccessException e) {
+            log.error("Failed to refresh token versions: {}", e.getMessage());
+        }
+        versions.values().removeIf(version -> version.changedAt() <= now - retentionMs);
+    }
+
+    public boolean isCurrent(Long userId, int version) {
+        Version current = versions.get(userId);
+        return current == null || current.version() == version;
+    }
+
+    public void update(Long userId, int version) {
+        merge(userId, new Version(version, System.currentTimeMillis()));
+    }
+
+    public void revoke(Long userId) {
+        versions.put(userId, new Version(REVOKED, System.currentTimeMillis()));
+    }
+
+    int size() {
+        return versions.size();
+    }
+
+    private void merge(Long userId, Version version) {
+        versions.merge(userId, version, (a, b) -> new Version(Math.max(a.version(), b.version()),
+                Math.max(a.changedAt(), b.changedAt())));
+    }
+
+    private record Version(int version, long changedAt) {
+    }
+}
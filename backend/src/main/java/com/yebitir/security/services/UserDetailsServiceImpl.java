@@ -4,6 +4,7 @@ import com.yebitir.model.User;
 import com.yebitir.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -12,10 +13,13 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -33,4 +37,25 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return UserDetailsImpl.build(user.get());
     }
+
+    /**
+     * Stores a password rehashed with the current cost on login.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserDetailsImpl details = (UserDetailsImpl) user;
+        userRepository.updatePassword(details.getId(), newPassword);
+        principalCache.evict(details.getUsername(), details.getEmail());
+        return new UserDetailsImpl(details.getId(), details.getUsername(), details.getEmail(), newPassword,
+                details.getAuthorities(), details.isEnabled());
+    }
+
+    /**
+     * Loads the principal of a request authenticated by token, from the
+     * {@link PrincipalCache} when it was loaded recently.
+     */
+    public UserDetails loadAuthenticatedUser(String username) throws UsernameNotFoundException {
+        return principalCache.get(username, name -> (UserDetailsImpl) loadUserByUsername(name));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.yebitir.service;
+
+import com.yebitir.dto.JwtResponse;
+import com.yebitir.exception.InvalidTokenException;
+import com.yebitir.exception.ResourceNotFoundException;
+import com.yebitir.model.User;
+import com.yebitir.security.jwt.JwtUtils;
+import com.yebitir.security.services.TokenRevocations;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Issues access and refresh tokens, rotates refresh tokens and revokes tokens
+ * on logout.
+ */
+@Service
+@Slf4j
+public class AuthTokenService {
+    private final JwtUtils jwtUtils;
+    private final TokenRevocations tokenRevocations;
+    private final UserService userService;
+    private final long reuseGraceMs;
+
+    @Autowired
+    public AuthTokenService(JwtUtils jwtUtils, TokenRevocations tokenRevocations, UserService userService,
+            @Value("${security.refresh.reuse-grace-ms:10000}") long reuseGraceMs) {
+        this.jwtUtils = jwtUtils;
+        this.tokenRevocations = tokenRevocations;
+        this.userService = userService;
+        this.reuseGraceMs = reuseGraceMs;
+    }
+
+    public JwtResponse issueTokens(User user) {
+        return new JwtResponse(jwtUtils.generateJwtToken(user), jwtUtils.generateRefreshToken(user),
+                jwtUtils.getJwtExpirationMs(), user);
+    }
+
+    /**
+     * Exchanges a refresh token for a new access and refresh token. The user is
+     * loaded, so a deactivated user or a bumped token version is noticed here
+     * at the latest. Each refresh token is revoked once used. Using one again
+     * means it was stolen, so all tokens of the user are revoked and both the
+     * thief and the user have to log in again. A token used again within
+     * {@code security.refresh.reuse-grace-ms} of its rotation is only
+     * rejected, as that is usually a second tab refreshing at the same time.
+     *
+     * @throws InvalidTokenException if the token is invalid, expired, revoked
+     *                               or already used
+     */
+    public JwtResponse refresh(String refreshToken) {
+        Optional<Claims> verified = refreshToken != null ? jwtUtils.verifyAndExtract(refreshToken) : Optional.empty();
+        Claims claims = verified
+                .filter(c -> JwtUtils.TYPE_REFRESH.equals(c.get(JwtUtils.CLAIM_TOKEN_TYPE, String.class)))
+                .orElseThrow(() -> new InvalidTokenException("Invalid or expired refresh token"));
+
+        User user;
+        try {
+            user = userService.getUserById(claims.get(JwtUtils.CLAIM_USER_ID, Long.class));
+        } catch (ResourceNotFoundException e) {
+            throw new InvalidTokenException("Invalid or expired refresh token");
+        }
+        Integer version = claims.get(JwtUtils.CLAIM_TOKEN_VERSION, Integer.class);
+        if (!user.isActive() || version == null || version != user.getTokenVersion()) {
+            throw new InvalidTokenException("Invalid or expired refresh token");
+        }
+
+        if (!tokenRevocations.revoke(claims.getId(), claims.getExpiration())) {
+            long rotatedAt = tokenRevocations.revokedAt(claims.getId()).orElse(0);
+            if (System.currentTimeMillis() - rotatedAt < reuseGraceMs) {
+                log.debug("Rejected refresh token of user {} rotated {} ms ago", user.getId(),
+                        System.currentTimeMillis() - rotatedAt);
+                throw new InvalidTokenException("Refresh token has already been used");
+            }
+            log.warn("Rejected reused refresh token of user {}, revoking all their tokens", user.getId());
+            userService.revokeTokens(user);
+            throw new InvalidTokenException("Refresh token has already been used");
+        }
+        return issueTokens(user);
+    }
+
+    /**
+     * Revokes the given tokens until they expire. Tokens that are invalid or
+     * carry no id are ignored.
+     */
+    public void revoke(String... tokens) {
+        for (String token : tokens) {
+            if (token == null) {
+                continue;
+            }
+            jwtUtils.verifyAndExtract(token)
+                    .filter(claims -> claims.getId() != null)
+                    .ifPresent(claims -> tokenRevocations.revoke(claims.getId(), claims.getExpiration()));
+        }
+    }
+}
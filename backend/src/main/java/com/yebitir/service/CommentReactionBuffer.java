@@ -0,0 +1,383 @@
+package com.yebitir.service;
+
+import com.yebitir.dto.CommentDTO;
+import com.yebitir.dto.CommentReactionDTO;
+import com.yebitir.exception.ResourceNotFoundException;
+import com.yebitir.exception.TooManyRequestsException;
+import com.yebitir.model.UserCommentReaction.ReactionType;
+import com.yebitir.repository.CommentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Records comment reactions in memory and writes them behind, so a burst of
+ * reactions on a popular comment costs a few batched statements per flush
+ * instead of a transaction per click.
+ * <p>
+ * A reaction is acknowledged once it is in the current batch, which holds the
+ * latest reaction of each user per comment and the like/dislike deltas of
+ * each comment in {@link LongAdder}s. The batch is flushed every
+ * {@code comments.reactions.flush-interval-ms}, or as soon as it holds
+ * {@code comments.reactions.flush-threshold} reactions, in one transaction of
+ * JDBC batches: reaction upserts and deletes, then one relative count update
+ * per comment. Only reactions that end up different from the one first read
+ * are written, and a count only changes by the reactions whose row was
+ * actually written, so a reaction of a user or to a comment deleted in the
+ * meantime changes no count. Pending reactions are overlaid on what is read from the
+ * database, so users see their reactions before they are flushed. A clean
+ * shutdown flushes them; reactions pending when the process dies are lost.
+ * <p>
+ * A batch that fails to flush is retried on the next flushes, ahead of newer
+ * batches, and dropped with an error after
+ * {@code comments.reactions.max-flush-attempts}. While the database is
+ * unavailable, reactions are refused with a {@link TooManyRequestsException}
+ * once the current batch holds {@code comments.reactions.max-pending} of them.
+ * <p>
+ * Pending reactions live in this instance only. With several instances,
+ * another instance shows them once they are flushed, and a user whose
+ * reactions to one comment reach two instances within a flush interval can
+ * leave the counts off by one from the stored reactions. Route a user's
+ * requests to one instance (sticky sessions) when that matters.
+ */
+@Component
+@Slf4j
+public class CommentReactionBuffer {
+    // Users or comments deleted since the reaction was recorded select no row
+    private static final String UPSERT_REACTION = "INSERT INTO user_comment_reactions "
+            + "(user_id, comment_id, reaction_type) SELECT u.id, c.id, ? FROM users u JOIN comments c ON c.id = ? "
+            + "WHERE u.id = ? ON DUPLICATE KEY UPDATE reaction_type = ?";
+    private static final String DELETE_REACTION = "DELETE FROM user_comment_reactions "
+            + "WHERE user_id = ? AND comment_id = ?";
+    private static final String ADD_COUNTS = "UPDATE comments SET likes = COALESCE(likes, 0) + ?, "
+            + "dislikes = COALESCE(dislikes, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CommentRepository commentRepository;
+    private final TaskScheduler taskScheduler;
+    private final int flushThreshold;
+    private final int maxPending;
+    private final int maxFlushAttempts;
+
+    // Recording holds the read lock, so reactions are recorded concurrently
+    // and swapping in a new batch only waits for those in progress
+    private final ReentrantReadWriteLock batchLock = new ReentrantReadWriteLock();
+    // Committing a flush holds the write lock, so a count read from the
+    // database is never combined with the deltas it already contains
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final Object flushMonitor = new Object();
+    private volatile Batch current = new Batch();
+    private volatile Batch flushing = new Batch();
+    private int flushAttempts;
+
+    @Autowired
+    public CommentReactionBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            CommentRepository commentRepository, TaskScheduler taskScheduler,
+            @Value("${comments.reactions.flush-threshold:500}") int flushThreshold,
+            @Value("${comments.reactions.max-pending:20000}") int maxPending,
+            @Value("${comments.reactions.max-flush-attempts:5}") int maxFlushAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.commentRepository = commentRepository;
+        this.taskScheduler = taskScheduler;
+        this.flushThreshold = flushThreshold;
+        this.maxPending = maxPending;
+        this.maxFlushAttempts = maxFlushAttempts;
+    }
+
+    /**
+     * Removes the user's reaction of the given type, or sets it, replacing a
+     * reaction of the other type.
+     *
+     * @return The comment's counts including all pending reactions
+     * @throws TooManyRequestsException if too many reactions are waiting to be flushed
+     */
+    public CommentReactionDTO toggle(Long commentId, Long userId, ReactionType type) {
+        ReactionKey key = new ReactionKey(userId, commentId);
+        Pending reaction;
+        CommentReactionDTO counts;
+        batchLock.readLock().lock();
+        try {
+            Batch batch = current;
+            if (batch.reactions.size() >= maxPending && !batch.reactions.containsKey(key)) {
+                throw new TooManyRequestsException("Too many reactions are pending, please try again shortly");
+            }
+            counts = new CommentReactionDTO();
+            Optional<ReactionType> read = read(key, counts);
+            // Once a user's reaction is in the current batch it is authoritative
+            Optional<ReactionType> stored = batch.reactions.containsKey(key) ? null : read;
+            reaction = batch.reactions.compute(key, (k, pending) -> {
+                Optional<ReactionType> original = pending != null ? pending.original() : stored;
+                Optional<ReactionType> previous = pending != null ? pending.current() : stored;
+                Optional<ReactionType> next = previous.equals(Optional.of(type)) ? Optional.empty()
+                        : Optional.of(type);
+                batch.add(commentId, previous, -1);
+                batch.add(commentId, next, 1);
+                return new Pending(original, next);
+            });
+            addDeltas(counts, batch);
+            if (batch.events.incrementAndGet() == flushThreshold) {
+                taskScheduler.schedule(this::flush, Instant.now());
+            }
+        } finally {
+            batchLock.readLock().unlock();
+        }
+
+        counts.setUserLiked(reaction.is(ReactionType.LIKE));
+        counts.setUserDisliked(reaction.is(ReactionType.DISLIKE));
+        return counts;
+    }
+
+    /**
+     * Adds the pending reactions to comments read from the database,
+     * including the user's own reactions when a user is given.
+     */
+    public void applyPending(List<CommentDTO> comments, Long userId) {
+        Batch flushed = flushing;
+        Batch batch = current;
+        for (CommentDTO comment : comments) {
+            for (Batch pending : List.of(flushed, batch)) {
+                Deltas deltas = pending.deltas.get(comment.getId());
+                if (deltas != null) {
+                    comment.setLikes(valueOf(comment.getLikes()) + deltas.likes.intValue());
+                    comment.setDislikes(valueOf(comment.getDislikes()) + deltas.dislikes.intValue());
+                }
+            }
+            if (userId != null) {
+                ReactionKey key = new ReactionKey(userId, comment.getId());
+                Pending reaction = batch.reactions.get(key);
+                if (reaction == null) {
+                    reaction = flushed.reactions.get(key);
+                }
+                if (reaction != null) {
+                    comment.setUserLiked(reaction.is(ReactionType.LIKE));
+                    comment.setUserDisliked(reaction.is(ReactionType.DISLIKE));
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${comments.reactions.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushMonitor) {
+            // A batch that failed to flush is retried before the next one is taken
+            if (!flushing.isEmpty() && !retry(flushing)) {
+                return;
+            }
+
+            Batch batch;
+            batchLock.writeLock().lock();
+            try {
+                batch = current;
+                if (batch.isEmpty()) {
+                    return;
+                }
+                flushing = batch;
+                current = new Batch();
+            } finally {
+                batchLock.writeLock().unlock();
+            }
+            flushAttempts = 1;
+            write(batch);
+        }
+    }
+
+    /**
+     * Writes a batch that failed before, or drops it once it has failed too
+     * often, e.g. because one of its statements can never succeed.
+     *
+     * @return Whether the batch is out of the way
+     */
+    private boolean retry(Batch batch) {
+        if (flushAttempts >= maxFlushAttempts) {
+            log.error("Dropped {} comment reactions after {} failed flushes", batch.events.get(), flushAttempts);
+            flushing = new Batch();
+            return true;
+        }
+        flushAttempts++;
+        return write(batch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Reads a comment's counts and the user's reaction to it in one query,
+     * with the batch being flushed applied, into {@code counts}.
+     *
+     * @return The user's reaction as stored or being flushed
+     */
+    private Optional<ReactionType> read(ReactionKey key, CommentReactionDTO counts) {
+        commitLock.readLock().lock();
+        try {
+            CommentReactionDTO stored = commentRepository.findReactionCounts(key.commentId(), key.userId());
+            if (stored == null) {
+                throw new ResourceNotFoundException("Comment not found with id: " + key.commentId());
+            }
+            counts.setId(stored.getId());
+            counts.setLikes(valueOf(stored.getLikes()));
+            counts.setDislikes(valueOf(stored.getDislikes()));
+            addDeltas(counts, flushing);
+
+            Pending flushed = flushing.reactions.get(key);
+            if (flushed != null) {
+                return flushed.current();
+            }
+            return stored.isUserLiked() ? Optional.of(ReactionType.LIKE)
+                    : stored.isUserDisliked() ? Optional.of(ReactionType.DISLIKE) : Optional.empty();
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    private void addDeltas(CommentReactionDTO counts, Batch batch) {
+        Deltas deltas = batch.deltas.get(counts.getId());
+        if (deltas != null) {
+            counts.setLikes(counts.getLikes() + deltas.likes.intValue());
+            counts.setDislikes(counts.getDislikes() + deltas.dislikes.intValue());
+        }
+    }
+
+    private static int valueOf(Integer count) {
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Writes a batch in one transaction, in comment id order so concurrent
+     * flushes of several instances lock rows in the same order. The counts
+     * are changed by the reactions whose statement affected a row.
+     *
+     * @return Whether the batch was written
+     */
+    private boolean write(Batch batch) {
+        List<Map.Entry<ReactionKey, Pending>> upserted = new ArrayList<>();
+        List<Map.Entry<ReactionKey, Pending>> deleted = new ArrayList<>();
+        batch.reactions.entrySet().stream()
+                .filter(entry -> entry.getValue().isChanged())
+                .sorted(Map.Entry.comparingByKey(ReactionKey.ORDER))
+                .forEach(entry -> (entry.getValue().current().isPresent() ? upserted : deleted).add(entry));
+        List<Object[]> upserts = upserted.stream()
+                .map(entry -> {
+                    String type = entry.getValue().current().get().name();
+                    return new Object[] { type, entry.getKey().commentId(), entry.getKey().userId(), type };
+                })
+                .collect(Collectors.toList());
+        List<Object[]> deletes = deleted.stream()
+                .map(entry -> new Object[] { entry.getKey().userId(), entry.getKey().commentId() })
+                .collect(Collectors.toList());
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, long[]> deltas = new TreeMap<>();
+                addWritten(deltas, deleted, jdbcTemplate.batchUpdate(DELETE_REACTION, deletes));
+                addWritten(deltas, upserted, jdbcTemplate.batchUpdate(UPSERT_REACTION, upserts));
+                List<Object[]> counts = new ArrayList<>();
+                deltas.forEach((commentId, delta) -> {
+                    if (delta[0] != 0 || delta[1] != 0) {
+                        counts.add(new Object[] { delta[0], delta[1], commentId });
+                    }
+                });
+                jdbcTemplate.batchUpdate(ADD_COUNTS, counts);
+                // Released once the batch is committed and no longer pending
+                commitLock.writeLock().lock();
+            });
+            flushing = new Batch();
+            log.debug("Flushed {} comment reactions", batch.events.get());
+            return true;
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} comment reactions (attempt {} of {}): {}", batch.events.get(),
+                    flushAttempts, maxFlushAttempts, e.getMessage());
+            return false;
+        } finally {
+            if (commitLock.isWriteLockedByCurrentThread()) {
+                commitLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds the like and dislike deltas of the reactions whose row was written
+     * to {@code deltas}, by comment id. A driver that reports no row count
+     * for batched statements counts every reaction as written.
+     */
+    private static void addWritten(Map<Long, long[]> deltas, List<Map.Entry<ReactionKey, Pending>> reactions,
+            int[] rows) {
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] == 0) {
+                continue;
+            }
+            Pending reaction = reactions.get(i).getValue();
+            long[] delta = deltas.computeIfAbsent(reactions.get(i).getKey().commentId(), id -> new long[2]);
+            delta[0] += reaction.delta(ReactionType.LIKE);
+            delta[1] += reaction.delta(ReactionType.DISLIKE);
+        }
+    }
+
+    private record ReactionKey(long userId, long commentId) {
+        static final Comparator<ReactionKey> ORDER = Comparator.comparingLong(ReactionKey::commentId)
+                .thenComparingLong(ReactionKey::userId);
+    }
+
+    private static final class Deltas {
+        final LongAdder likes = new LongAdder();
+        final LongAdder dislikes = new LongAdder();
+    }
+
+    /**
+     * A user's reaction to a comment as read before the batch, and as it is
+     * now. {@code Optional.empty()} is no reaction.
+     */
+    private record Pending(Optional<ReactionType> original, Optional<ReactionType> current) {
+        boolean is(ReactionType type) {
+            return current.equals(Optional.of(type));
+        }
+
+        boolean isChanged() {
+            return !current.equals(original);
+        }
+
+        int delta(ReactionType type) {
+            return (is(type) ? 1 : 0) - (original.equals(Optional.of(type)) ? 1 : 0);
+        }
+    }
+
+    private static final class Batch {
+        final Map<ReactionKey, Pending> reactions = new ConcurrentHashMap<>();
+        final Map<Long, Deltas> deltas = new ConcurrentHashMap<>();
+        final AtomicInteger events = new AtomicInteger();
+
+        void add(Long commentId, Optional<ReactionType> reaction, int delta) {
+            reaction.ifPresent(type -> {
+                Deltas counts = deltas.computeIfAbsent(commentId, id -> new Deltas());
+                (type == ReactionType.LIKE ? counts.likes : counts.dislikes).add(delta);
+            });
+        }
+
+        boolean isEmpty() {
+            return reactions.isEmpty() && deltas.isEmpty();
+        }
+    }
+}
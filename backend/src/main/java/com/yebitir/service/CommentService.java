@@ -1,6 +1,7 @@
 package com.yebitir.service;
 
 import com.yebitir.dto.CommentDTO;
+import com.yebitir.dto.CommentReactionDTO;
 import com.yebitir.exception.ResourceNotFoundException;
 import com.yebitir.exception.UnauthorizedException;
 import com.yebitir.model.Comment;
@@ -20,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -31,14 +31,19 @@ public class CommentService {
         private final RecipeRepository recipeRepository;
         private final UserRepository userRepository;
         private final UserCommentReactionRepository userCommentReactionRepository;
+        private final RecipeService recipeService;
+        private final CommentReactionBuffer commentReactionBuffer;
 
         @Autowired
         public CommentService(CommentRepository commentRepository, RecipeRepository recipeRepository,
-                        UserRepository userRepository, UserCommentReactionRepository userCommentReactionRepository) {
+                        UserRepository userRepository, UserCommentReactionRepository userCommentReactionRepository,
+                        RecipeService recipeService, CommentReactionBuffer commentReactionBuffer) {
                 this.commentRepository = commentRepository;
                 this.recipeRepository = recipeRepository;
                 this.userRepository = userRepository;
                 this.userCommentReactionRepository = userCommentReactionRepository;
+                this.recipeService = recipeService;
+                this.commentReactionBuffer = commentReactionBuffer;
         }
 
         @Transactional
@@ -59,11 +64,16 @@ public class CommentService {
                 comment.setDislikes(0);
                 comment.setRating(rating);
 
-                return commentRepository.save(comment);
+                Comment savedComment = commentRepository.save(comment);
+                recipeService.addRating(recipeId, rating, 1);
+                return savedComment;
         }
 
+        /**
+         * @param rating The new rating, or null to keep the current one
+         */
         @Transactional
-        public Comment updateComment(Long commentId, Long userId, String text) {
+        public Comment updateComment(Long commentId, Long userId, String text, Float rating) {
                 Comment comment = commentRepository.findById(commentId)
                                 .orElseThrow(() -> new ResourceNotFoundException(
                                                 "Comment not found with id: " + commentId));
@@ -77,8 +87,16 @@ public class CommentService {
                 }
 
                 comment.setText(text);
+                Float oldRating = comment.getRating();
+                if (rating == null || rating.equals(oldRating)) {
+                        return commentRepository.save(comment);
+                }
 
-                return commentRepository.save(comment);
+                comment.setRating(rating);
+                commentRepository.save(comment);
+                recipeService.addRating(comment.getRecipe().getId(), rating - oldRating, 0);
+                // Adding the rating detached the comment, read it again for its author
+                return getCommentById(commentId);
         }
 
         @Transactional(readOnly = true)
@@ -100,9 +118,11 @@ public class CommentService {
 
                 if (userId == null) {
                         // If user is not logged in, return comments without reaction info
-                        return comments.stream()
+                        List<CommentDTO> commentDTOs = comments.stream()
                                         .map(CommentDTO::new)
                                         .collect(Collectors.toList());
+                        commentReactionBuffer.applyPending(commentDTOs, null);
+                        return commentDTOs;
                 }
 
                 User user = userRepository.findById(userId)
@@ -118,12 +138,14 @@ public class CommentService {
                                                 Function.identity()));
 
                 // Create DTOs with reaction info
-                return comments.stream()
+                List<CommentDTO> commentDTOs = comments.stream()
                                 .map(comment -> {
                                         UserCommentReaction reaction = commentReactionsMap.get(comment.getId());
                                         return new CommentDTO(comment, reaction);
                                 })
                                 .collect(Collectors.toList());
+                commentReactionBuffer.applyPending(commentDTOs, userId);
+                return commentDTOs;
         }
 
         @Transactional
@@ -142,133 +164,21 @@ public class CommentService {
                         throw new UnauthorizedException("You don't have permission to delete this comment");
                 }
 
-                commentRepository.delete(comment);
+                removeComment(comment);
         }
 
-        @Transactional
-        public Comment likeComment(Long commentId, Long userId) {
-                log.info("Attempting to like comment: commentId={}, userId={}", commentId, userId);
-
-                Comment comment = commentRepository.findById(commentId)
-                                .orElseThrow(() -> new ResourceNotFoundException(
-                                                "Comment not found with id: " + commentId));
-                log.info("Found comment: id={}, current likes={}, dislikes={}", comment.getId(), comment.getLikes(),
-                                comment.getDislikes());
-
-                User user = userRepository.findById(userId)
-                                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-                log.info("Found user: id={}, username={}", user.getId(), user.getUsername());
-
-                Optional<UserCommentReaction> existingReaction = userCommentReactionRepository.findByUserAndComment(
-                                user,
-                                comment);
-                log.info("Existing reaction found: {}", existingReaction.isPresent());
-
-                if (existingReaction.isPresent()) {
-                        UserCommentReaction reaction = existingReaction.get();
-                        log.info("Existing reaction type: {}", reaction.getReactionType());
-
-                        if (reaction.getReactionType() == UserCommentReaction.ReactionType.LIKE) {
-                                // User already liked this comment, remove the like
-                                log.info("Removing existing LIKE reaction");
-                                userCommentReactionRepository.delete(reaction);
-                                comment.setLikes(comment.getLikes() - 1);
-                                log.info("Updated comment likes to: {}", comment.getLikes());
-                        } else {
-                                // User previously disliked this comment, change to like
-                                log.info("Changing DISLIKE reaction to LIKE");
-                                reaction.setReactionType(UserCommentReaction.ReactionType.LIKE);
-                                UserCommentReaction savedReaction = userCommentReactionRepository.save(reaction);
-                                log.info("Saved reaction with id: {}, type: {}", savedReaction.getId(),
-                                                savedReaction.getReactionType());
-
-                                comment.setLikes(comment.getLikes() + 1);
-                                comment.setDislikes(comment.getDislikes() - 1);
-                                log.info("Updated comment likes to: {}, dislikes to: {}", comment.getLikes(),
-                                                comment.getDislikes());
-                        }
-                } else {
-                        // New like
-                        log.info("Creating new LIKE reaction");
-                        UserCommentReaction reaction = new UserCommentReaction();
-                        reaction.setUser(user);
-                        reaction.setComment(comment);
-                        reaction.setReactionType(UserCommentReaction.ReactionType.LIKE);
-                        UserCommentReaction savedReaction = userCommentReactionRepository.save(reaction);
-                        log.info("Saved new reaction with id: {}", savedReaction.getId());
-
-                        comment.setLikes(comment.getLikes() + 1);
-                        log.info("Updated comment likes to: {}", comment.getLikes());
-                }
-
-                Comment savedComment = commentRepository.save(comment);
-                log.info("Saved comment with id: {}, likes: {}, dislikes: {}",
-                                savedComment.getId(), savedComment.getLikes(), savedComment.getDislikes());
-
-                return savedComment;
+        private void removeComment(Comment comment) {
+                Long recipeId = comment.getRecipe().getId();
+                commentRepository.delete(comment);
+                recipeService.addRating(recipeId, -comment.getRating(), -1);
         }
 
-        @Transactional
-        public Comment dislikeComment(Long commentId, Long userId) {
-                log.info("Attempting to dislike comment: commentId={}, userId={}", commentId, userId);
-
-                Comment comment = commentRepository.findById(commentId)
-                                .orElseThrow(() -> new ResourceNotFoundException(
-                                                "Comment not found with id: " + commentId));
-                log.info("Found comment: id={}, current likes={}, dislikes={}", comment.getId(), comment.getLikes(),
-                                comment.getDislikes());
-
-                User user = userRepository.findById(userId)
-                                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-                log.info("Found user: id={}, username={}", user.getId(), user.getUsername());
-
-                Optional<UserCommentReaction> existingReaction = userCommentReactionRepository.findByUserAndComment(
-                                user,
-                                comment);
-                log.info("Existing reaction found: {}", existingReaction.isPresent());
-
-                if (existingReaction.isPresent()) {
-                        UserCommentReaction reaction = existingReaction.get();
-                        log.info("Existing reaction type: {}", reaction.getReactionType());
-
-                        if (reaction.getReactionType() == UserCommentReaction.ReactionType.DISLIKE) {
-                                // User already disliked this comment, remove the dislike
-                                log.info("Removing existing DISLIKE reaction");
-                                userCommentReactionRepository.delete(reaction);
-                                comment.setDislikes(comment.getDislikes() - 1);
-                                log.info("Updated comment dislikes to: {}", comment.getDislikes());
-                        } else {
-                                // User previously liked this comment, change to dislike
-                                log.info("Changing LIKE reaction to DISLIKE");
-                                reaction.setReactionType(UserCommentReaction.ReactionType.DISLIKE);
-                                UserCommentReaction savedReaction = userCommentReactionRepository.save(reaction);
-                                log.info("Saved reaction with id: {}, type: {}", savedReaction.getId(),
-                                                savedReaction.getReactionType());
-
-                                comment.setDislikes(comment.getDislikes() + 1);
-                                comment.setLikes(comment.getLikes() - 1);
-                                log.info("Updated comment likes to: {}, dislikes to: {}", comment.getLikes(),
-                                                comment.getDislikes());
-                        }
-                } else {
-                        // New dislike
-                        log.info("Creating new DISLIKE reaction");
-                        UserCommentReaction reaction = new UserCommentReaction();
-                        reaction.setUser(user);
-                        reaction.setComment(comment);
-                        reaction.setReactionType(UserCommentReaction.ReactionType.DISLIKE);
-                        UserCommentReaction savedReaction = userCommentReactionRepository.save(reaction);
-                        log.info("Saved new reaction with id: {}", savedReaction.getId());
-
-                        comment.setDislikes(comment.getDislikes() + 1);
-                        log.info("Updated comment dislikes to: {}", comment.getDislikes());
-                }
-
-                Comment savedComment = commentRepository.save(comment);
-                log.info("Saved comment with id: {}, likes: {}, dislikes: {}",
-                                savedComment.getId(), savedComment.getLikes(), savedComment.getDislikes());
+        public CommentReactionDTO likeComment(Long commentId, Long userId) {
+                return commentReactionBuffer.toggle(commentId, userId, UserCommentReaction.ReactionType.LIKE);
+        }
 
-                return savedComment;
+        public CommentReactionDTO dislikeComment(Long commentId, Long userId) {
+                return commentReactionBuffer.toggle(commentId, userId, UserCommentReaction.ReactionType.DISLIKE);
         }
 
         public List<Comment> getAllComments() {
@@ -282,8 +192,9 @@ public class CommentService {
                 commentRepository.save(comment);
         }
 
+        @Transactional
         public void deleteComment(Long commentId) {
-                commentRepository.deleteById(commentId);
+                commentRepository.findById(commentId).ifPresent(this::removeComment);
         }
 
         public Comment getCommentById(Long commentId) {
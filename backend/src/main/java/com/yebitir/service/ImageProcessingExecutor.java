@@ -0,0 +1,72 @@
+package com.yebitir.service;
+
+import com.yebitir.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated, bounded worker pool for CPU-heavy image decoding and encoding,
+ * so upload bursts queue here instead of pinning Tomcat request threads.
+ * When both the workers and the queue are full, new work is rejected with a
+ * {@link TooManyRequestsException} rather than piling up.
+ */
+@Component
+@Slf4j
+public class ImageProcessingExecutor {
+    private final ThreadPoolExecutor executor;
+
+    public ImageProcessingExecutor(@Value("${image.processing.pool-size:2}") int poolSize,
+            @Value("${image.processing.queue-capacity:20}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-processing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a task for execution.
+     *
+     * @throws TooManyRequestsException if the pool is saturated
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    // Errors such as OutOfMemoryError must fail the image too,
+                    // or it would stay processing forever
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Image processing queue is full ({} queued), rejecting upload", executor.getQueue().size());
+            throw new TooManyRequestsException("Too many images are being processed, please try again shortly");
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.yebitir.service;
+
+import com.yebitir.exception.InvalidImageException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageVariant;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Turns an uploaded image into the fixed set of {@link ImageVariant}s, each
+ * encoded as JPEG and, when a WebP encoder is installed, also as WebP.
+ * The source is decoded once, straight from disk and subsampled to roughly
+ * the largest variant; each smaller variant is scaled from the previous one,
+ * which is both cheaper and sharper than scaling from the original.
+ * <p>
+ * Dimensions are read from the image header before any pixels are decoded:
+ * images larger than {@code image.max-source-pixels} are rejected outright and
+ * the decoded raster is kept within {@code image.max-pixels} by subsampling.
+ */
+@Component
+@Slf4j
+public class ImageProcessor {
+    private final long maxSourcePixels;
+    private final long maxPixels;
+    private final Map<ImageFormat, ImageWriterPool> writers = new EnumMap<>(ImageFormat.class);
+    private volatile boolean webpEnabled;
+
+    public ImageProcessor(@Value("${image.max-source-pixels:100000000}") long maxSourcePixels,
+            @Value("${image.max-pixels:4000000}") long maxPixels,
+            @Value("${image.processing.pool-size:2}") int poolSize,
+            @Value("${image.webp.enabled:true}") boolean webpEnabled) {
+        this.maxSourcePixels = maxSourcePixels;
+        this.maxPixels = maxPixels;
+        for (ImageFormat format : ImageFormat.values()) {
+            writers.put(format, new ImageWriterPool(format.getExtension(), poolSize));
+        }
+        this.webpEnabled = webpEnabled && ImageIO.getImageWritersByFormatName("webp").hasNext();
+        if (webpEnabled && !this.webpEnabled) {
+            log.warn("No WebP image writer is installed, only JPEG derivatives will be generated");
+        }
+        // Encoded variants are small; buffer them in memory rather than in temp files
+        ImageIO.setUseCache(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.values().forEach(ImageWriterPool::clear);
+    }
+
+    /**
+     * Checks that a file is a decodable image within the size limits by
+     * reading only its header.
+     *
+     * @throws InvalidImageException if it is not
+     */
+    public void verify(Path imageFile) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile.toFile())) {
+            ImageReader reader = readerFor(input);
+            try {
+                reader.setInput(input, true, true);
+                checkSourceSize(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return The encoded bytes of every variant by format; {@link ImageFormat#JPEG}
+     *         is always present
+     */
+    public Map<ImageVariant, Map<ImageFormat, byte[]>> createVariants(Path imageFile) throws IOException {
+        BufferedImage source = decode(imageFile);
+
+        Map<ImageVariant, Map<ImageFormat, byte[]>> variants = new EnumMap<>(ImageVariant.class);
+        BufferedImage current = toRgb(source);
+        for (ImageVariant variant : ImageVariant.values()) {
+            current = scaleToFit(current, variant.getMaxDimension());
+
+            Map<ImageFormat, byte[]> encodings = new EnumMap<>(ImageFormat.class);
+            encodings.put(ImageFormat.JPEG, encode(current, ImageFormat.JPEG, variant.getQuality()));
+            if (webpEnabled) {
+                encodeWebp(current, variant.getQuality(), encodings);
+            }
+            variants.put(variant, encodings);
+        }
+        return variants;
+    }
+
+    /**
+     * WebP is an optimisation, so it is only kept when it beats the JPEG and
+     * encoder failures only cost the WebP copy. A native library that fails to
+     * load disables WebP for the process.
+     */
+    private void encodeWebp(BufferedImage image, float quality, Map<ImageFormat, byte[]> encodings) {
+        try {
+            byte[] webp = encode(image, ImageFormat.WEBP, quality);
+            if (webp.length < encodings.get(ImageFormat.JPEG).length) {
+                encodings.put(ImageFormat.WEBP, webp);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to encode WebP derivative: {}", e.getMessage());
+        } catch (LinkageError e) {
+            log.error("WebP encoder is unavailable on this platform, disabling it: {}", e.getMessage());
+            webpEnabled = false;
+        }
+    }
+
+    /**
+     * Decodes an image, skipping source pixels when it is much larger than the
+     * full-size variant so the decoded raster stays proportional to what we keep.
+     */
+    private BufferedImage decode(Path imageFile) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile.toFile())) {
+            ImageReader reader = readerFor(input);
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                checkSourceSize(width, height);
+
+                int subsampling = Math.max(1, Math.max(width, height) / ImageVariant.FULL.getMaxDimension());
+                // Very elongated images can still exceed the budget after fitting the longest side
+                long pixels = (long) width * height;
+                subsampling = Math.max(subsampling, (int) Math.ceil(Math.sqrt((double) pixels / maxPixels)));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageReader readerFor(ImageInputStream input) {
+        Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+        if (readers == null || !readers.hasNext()) {
+            throw new InvalidImageException("Unsupported or corrupt image");
+        }
+        return readers.next();
+    }
+
+    private void checkSourceSize(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > maxSourcePixels) {
+            throw new InvalidImageException(
+                    "Image dimensions " + width + "x" + height + " exceed the allowed size");
+        }
+    }
+
+    private BufferedImage scaleToFit(BufferedImage image, int maxDimension) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= maxDimension && height <= maxDimension) {
+            return image;
+        }
+
+        double scale = (double) maxDimension / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * JPEG has no alpha channel, so transparent PNGs are flattened onto white.
+     */
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private byte[] encode(BufferedImage image, ImageFormat format, float quality) throws IOException {
+        ImageWriterPool pool = writers.get(format);
+        ImageWriter writer = pool.borrow();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (format == ImageFormat.WEBP) {
+                param.setCompressionType("Lossy");
+            }
+            param.setCompressionQuality(quality);
+
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            pool.release(writer);
+        }
+        return outputStream.toByteArray();
+    }
+}
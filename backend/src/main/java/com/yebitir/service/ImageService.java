@@ -0,0 +1,175 @@
+package com.yebitir.service;
+
+import com.yebitir.exception.InvalidImageException;
+import com.yebitir.exception.ResourceNotFoundException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageVariant;
+import com.yebitir.repository.RecipeRepository;
+import com.yebitir.repository.UserRepository;
+import com.yebitir.storage.ImageStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Content-addressed image storage on top of an {@link ImageStore}. Every upload
+ * is turned into its {@link ImageVariant} derivatives, which are stored side by
+ * side under the SHA-256 of the full-size JPEG: {@code <hash>.jpg},
+ * {@code <hash>-card.jpg}, {@code <hash>-thumbnail.jpg}, plus the same names
+ * with a {@code .webp} extension when WebP is available. Identical uploads are
+ * stored once and a hash never changes meaning.
+ */
+@Service
+@Slf4j
+public class ImageService {
+    private final ImageStore imageStore;
+    private final ImageProcessor imageProcessor;
+    private final ImageProcessingExecutor imageProcessingExecutor;
+    private final RecipeRepository recipeRepository;
+    private final UserRepository userRepository;
+
+    @Autowired
+    public ImageService(ImageStore imageStore, ImageProcessor imageProcessor,
+            ImageProcessingExecutor imageProcessingExecutor, RecipeRepository recipeRepository,
+            UserRepository userRepository) {
+        this.imageStore = imageStore;
+        this.imageProcessor = imageProcessor;
+        this.imageProcessingExecutor = imageProcessingExecutor;
+        this.recipeRepository = recipeRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Generates and stores the derivatives of an image file.
+     *
+     * @return The hash identifying the stored image
+     * @throws IOException if the file is not a readable image
+     */
+    public String storeImage(Path imageFile) throws IOException {
+        Map<ImageVariant, Map<ImageFormat, byte[]>> variants = imageProcessor.createVariants(imageFile);
+        byte[] fullJpeg = variants.get(ImageVariant.FULL).get(ImageFormat.JPEG);
+        String hash = HexFormat.of().formatHex(newDigest().digest(fullJpeg));
+
+        for (Map.Entry<ImageVariant, Map<ImageFormat, byte[]>> variant : variants.entrySet()) {
+            for (Map.Entry<ImageFormat, byte[]> encoding : variant.getValue().entrySet()) {
+                String key = keyFor(hash, variant.getKey(), encoding.getKey());
+                if (!imageStore.exists(key)) {
+                    byte[] bytes = encoding.getValue();
+                    imageStore.put(key, new ByteArrayInputStream(bytes), bytes.length);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Processes and stores an image on the image processing pool. Takes
+     * ownership of the file, which is deleted once processed or rejected.
+     * The image header is checked up front so bad uploads fail the request.
+     *
+     * @return A future completed with the image hash
+     * @throws InvalidImageException if the file is not an acceptable image
+     * @throws com.yebitir.exception.TooManyRequestsException if the pool is saturated
+     */
+    public CompletableFuture<String> storeImageAsync(Path imageFile) {
+        try {
+            imageProcessor.verify(imageFile);
+            return imageProcessingExecutor.submit(() -> {
+                try {
+                    return storeImage(imageFile);
+                } finally {
+                    discard(imageFile);
+                }
+            });
+        } catch (IOException e) {
+            discard(imageFile);
+            throw new InvalidImageException("Failed to read image data");
+        } catch (RuntimeException e) {
+            discard(imageFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a derivative in the preferred format, falling back to JPEG and then
+     * to the full size for images stored before those derivatives existed.
+     */
+    public StoredImage loadImage(String hash, ImageVariant variant, ImageFormat format) {
+        try {
+            if (format != ImageFormat.JPEG) {
+                String key = keyFor(hash, variant, format);
+                if (imageStore.exists(key)) {
+                    return new StoredImage(imageStore.get(key), format);
+                }
+            }
+            String key = keyFor(hash, variant, ImageFormat.JPEG);
+            if (variant != ImageVariant.FULL && !imageStore.exists(key)) {
+                key = keyFor(hash, ImageVariant.FULL, ImageFormat.JPEG);
+            }
+            return new StoredImage(imageStore.get(key), ImageFormat.JPEG);
+        } catch (FileNotFoundException e) {
+            throw new ResourceNotFoundException("Image not found: " + hash);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read image " + hash, e);
+        }
+    }
+
+    /**
+     * Deletes the derivatives of an image that was stored for a recipe or user
+     * deleted while it was being processed. Identical uploads share a hash, so
+     * the image is kept if any recipe or user still refers to it.
+     */
+    public void deleteIfUnreferenced(String hash) {
+        if (recipeRepository.existsByImageHash(hash) || userRepository.existsByProfileImageHash(hash)) {
+            return;
+        }
+        for (ImageVariant variant : ImageVariant.values()) {
+            for (ImageFormat format : ImageFormat.values()) {
+                try {
+                    imageStore.delete(keyFor(hash, variant, format));
+                } catch (IOException e) {
+                    log.warn("Failed to delete orphaned image {}: {}", hash, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a spooled upload that will not be processed.
+     */
+    public void discard(Path imageFile) {
+        try {
+            Files.deleteIfExists(imageFile);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp file {}: {}", imageFile, e.getMessage());
+        }
+    }
+
+    private String keyFor(String hash, ImageVariant variant, ImageFormat format) {
+        String extension = "." + format.getExtension();
+        if (variant == ImageVariant.FULL) {
+            return hash + extension;
+        }
+        return hash + "-" + variant.name().toLowerCase() + extension;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
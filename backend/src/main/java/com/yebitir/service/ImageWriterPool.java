@@ -0,0 +1,49 @@
+package com.yebitir.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Small pool of {@link ImageWriter}s for one format. Writers are not thread
+ * safe, but looking one up through the service registry on every encode is
+ * needlessly expensive, so idle writers are reset and kept for reuse.
+ */
+class ImageWriterPool {
+    private final String formatName;
+    private final BlockingQueue<ImageWriter> idle;
+
+    ImageWriterPool(String formatName, int capacity) {
+        this.formatName = formatName;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    ImageWriter borrow() throws IOException {
+        ImageWriter writer = idle.poll();
+        if (writer != null) {
+            return writer;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer found for " + formatName);
+        }
+        return writers.next();
+    }
+
+    void release(ImageWriter writer) {
+        writer.reset();
+        if (!idle.offer(writer)) {
+            writer.dispose();
+        }
+    }
+
+    void clear() {
+        ImageWriter writer;
+        while ((writer = idle.poll()) != null) {
+            writer.dispose();
+        }
+    }
+}
@@ -1,85 +1,243 @@
 package com.yebitir.service;
 
+import com.yebitir.dto.CursorPage;
+import com.yebitir.dto.PantryMatchDTO;
 import com.yebitir.dto.RecipeDTO;
 import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.dto.RecipeRatingDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.dto.SearchPage;
+import com.yebitir.dto.SuggestionDTO;
 import com.yebitir.exception.ResourceNotFoundException;
 import com.yebitir.exception.UnauthorizedException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageStatus;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.Recipe;
 import com.yebitir.model.Role;
 import com.yebitir.model.User;
 import com.yebitir.repository.RecipeRepository;
+import com.yebitir.repository.RecipeSort;
 import com.yebitir.repository.UserRepository;
+import com.yebitir.search.FacetCounts;
+import com.yebitir.search.PantryIndex;
+import com.yebitir.search.PantryMatch;
+import com.yebitir.search.RandomRecipeSampler;
+import com.yebitir.search.RecipeFacetSnapshot;
+import com.yebitir.search.RecipeSearchIndex;
+import com.yebitir.search.RecipeSearchResult;
+import com.yebitir.search.SuggestIndex;
+import com.yebitir.search.SuggestedRecipeRanking;
+import com.yebitir.util.RecipeCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class RecipeService {
+    private static final int SUGGESTED_RECIPES = 6;
+
     private final RecipeRepository recipeRepository;
     private final UserRepository userRepository;
     private final UserService userService;
+    private final ImageService imageService;
+    private final RecipeSearchIndex searchIndex;
+    private final PantryIndex pantryIndex;
+    private final SuggestIndex suggestIndex;
+    private final RecipeFacetSnapshot facetSnapshot;
+    private final RandomRecipeSampler randomSampler;
+    private final SuggestedRecipeRanking suggestedRanking;
 
     @Autowired
-    public RecipeService(RecipeRepository recipeRepository, UserRepository userRepository, UserService userService) {
+    public RecipeService(RecipeRepository recipeRepository, UserRepository userRepository, UserService userService,
+            ImageService imageService, RecipeSearchIndex searchIndex, PantryIndex pantryIndex,
+            SuggestIndex suggestIndex, RecipeFacetSnapshot facetSnapshot, RandomRecipeSampler randomSampler,
+            SuggestedRecipeRanking suggestedRanking) {
         this.recipeRepository = recipeRepository;
         this.userRepository = userRepository;
         this.userService = userService;
+        this.imageService = imageService;
+        this.searchIndex = searchIndex;
+        this.pantryIndex = pantryIndex;
+        this.suggestIndex = suggestIndex;
+        this.facetSnapshot = facetSnapshot;
+        this.randomSampler = randomSampler;
+        this.suggestedRanking = suggestedRanking;
     }
 
-    public Recipe createRecipe(Long userId, RecipeDTO recipeDTO, byte[] imageBytes) {
-        User owner = userService.getUserById(userId);
-
-        Recipe recipe = new Recipe();
-        recipe.setTitle(recipeDTO.getTitle());
-        recipe.setDescription(recipeDTO.getDescription());
-        recipe.setImage(imageBytes);
-        recipe.setTimeInMins(recipeDTO.getTimeInMins());
-        recipe.setServings(recipeDTO.getServings());
-        recipe.setIngredients(recipeDTO.getIngredients());
-        recipe.setInstructions(recipeDTO.getInstructions());
-        recipe.setCuisine(recipeDTO.getCuisine());
-        recipe.setMealType(recipeDTO.getMealType());
-        recipe.setDiet(recipeDTO.getDiet());
-        recipe.setMainIngredient(recipeDTO.getMainIngredient());
-        recipe.setPrepTime(recipeDTO.getPrepTime());
-        recipe.setCookTime(recipeDTO.getCookTime());
-        recipe.setOwner(owner);
-        recipe.setDateCreated(LocalDateTime.now());
-        recipe.setRating(0.0f);
-        recipe.setActive(false);
-
-        return recipeRepository.save(recipe);
-    }
-
-    public Recipe updateRecipe(Long recipeId, Long userId, RecipeDTO recipeDTO, byte[] imageBytes) {
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new ResourceNotFoundException("Recipe not found with id: " + recipeId));
+    /**
+     * Creates a recipe and queues its image, if any, for processing.
+     *
+     * @param imageFile Spooled upload; ownership passes to the image service
+     */
+    public Recipe createRecipe(Long userId, RecipeDTO recipeDTO, Path imageFile) {
+        // Queue the image first so a saturated pool rejects the request before anything is saved
+        CompletableFuture<String> pendingImage = imageFile != null ? imageService.storeImageAsync(imageFile) : null;
 
-        // Check if the user is the owner of the recipe
-        if (!recipe.getOwner().getId().equals(userId)) {
-            throw new UnauthorizedException("You are not authorized to update this recipe");
+        Recipe savedRecipe;
+        try {
+            User owner = userService.getUserById(userId);
+
+            Recipe recipe = new Recipe();
+            recipe.setTitle(recipeDTO.getTitle());
+            recipe.setDescription(recipeDTO.getDescription());
+            recipe.setImageStatus(pendingImage != null ? ImageStatus.PROCESSING : null);
+            recipe.setTimeInMins(recipeDTO.getTimeInMins());
+            recipe.setServings(recipeDTO.getServings());
+            recipe.setIngredients(recipeDTO.getIngredients());
+            recipe.setInstructions(recipeDTO.getInstructions());
+            recipe.setCuisine(recipeDTO.getCuisine());
+            recipe.setMealType(recipeDTO.getMealType());
+            recipe.setDiet(recipeDTO.getDiet());
+            recipe.setMainIngredient(recipeDTO.getMainIngredient());
+            recipe.setPrepTime(recipeDTO.getPrepTime());
+            recipe.setCookTime(recipeDTO.getCookTime());
+            recipe.setOwner(owner);
+            recipe.setDateCreated(LocalDateTime.now());
+            recipe.setRating(0.0f);
+            recipe.setActive(false);
+
+            savedRecipe = recipeRepository.save(recipe);
+        } catch (RuntimeException e) {
+            discardWhenReady(pendingImage);
+            throw e;
+        }
+        if (pendingImage != null) {
+            attachImageWhenReady(savedRecipe.getId(), pendingImage);
+        }
+        afterCommit(() -> indexRecipe(savedRecipe));
+        return savedRecipe;
+    }
+
+    /**
+     * Updates a recipe and queues its new image, if any, for processing.
+     *
+     * @param imageFile Spooled upload; ownership passes to the image service
+     */
+    public Recipe updateRecipe(Long recipeId, Long userId, RecipeDTO recipeDTO, Path imageFile) {
+        Recipe recipe;
+        try {
+            recipe = recipeRepository.findById(recipeId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Recipe not found with id: " + recipeId));
+
+            // Check if the user is the owner of the recipe
+            if (!recipe.getOwner().getId().equals(userId)) {
+                throw new UnauthorizedException("You are not authorized to update this recipe");
+            }
+        } catch (RuntimeException e) {
+            if (imageFile != null) {
+                imageService.discard(imageFile);
+            }
+            throw e;
+        }
+
+        // The current image stays visible until the new one has been processed
+        CompletableFuture<String> pendingImage = imageFile != null ? imageService.storeImageAsync(imageFile) : null;
+
+        Recipe savedRecipe;
+        try {
+            recipe.setTitle(recipeDTO.getTitle());
+            recipe.setDescription(recipeDTO.getDescription());
+            recipe.setTimeInMins(recipeDTO.getTimeInMins());
+            recipe.setServings(recipeDTO.getServings());
+            recipe.setIngredients(recipeDTO.getIngredients());
+            recipe.setInstructions(recipeDTO.getInstructions());
+            recipe.setCuisine(recipeDTO.getCuisine());
+            recipe.setMealType(recipeDTO.getMealType());
+            recipe.setUpdatedAt(LocalDateTime.now());
+
+            savedRecipe = recipeRepository.save(recipe);
+            if (pendingImage != null) {
+                recipeRepository.updateImageStatus(recipeId, ImageStatus.PROCESSING);
+                savedRecipe.setImageStatus(ImageStatus.PROCESSING);
+            }
+        } catch (RuntimeException e) {
+            discardWhenReady(pendingImage);
+            throw e;
         }
+        if (pendingImage != null) {
+            attachImageWhenReady(recipeId, pendingImage);
+        }
+        afterCommit(() -> indexRecipe(savedRecipe));
+        return savedRecipe;
+    }
 
-        recipe.setTitle(recipeDTO.getTitle());
-        recipe.setDescription(recipeDTO.getDescription());
-        if (imageBytes != null) {
-            recipe.setImage(imageBytes);
+    private void attachImageWhenReady(Long recipeId, CompletableFuture<String> pendingImage) {
+        pendingImage.whenComplete((imageHash, error) -> {
+            if (error != null) {
+                log.error("Failed to process image of recipe {}: {}", recipeId, error.getMessage());
+                recipeRepository.updateImageStatus(recipeId, ImageStatus.FAILED);
+            } else if (recipeRepository.updateImage(recipeId, imageHash, ImageStatus.READY) == 0) {
+                // The recipe was deleted while its image was processed
+                imageService.deleteIfUnreferenced(imageHash);
+            }
+        });
+    }
+
+    /**
+     * Deletes the derivatives of an image queued for a recipe that was not
+     * saved, once they have been stored.
+     */
+    private void discardWhenReady(CompletableFuture<String> pendingImage) {
+        if (pendingImage != null) {
+            pendingImage.thenAccept(imageService::deleteIfUnreferenced);
         }
-        recipe.setTimeInMins(recipeDTO.getTimeInMins());
-        recipe.setServings(recipeDTO.getServings());
-        recipe.setIngredients(recipeDTO.getIngredients());
-        recipe.setInstructions(recipeDTO.getInstructions());
-        recipe.setCuisine(recipeDTO.getCuisine());
-        recipe.setMealType(recipeDTO.getMealType());
-        recipe.setUpdatedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Runs an index update once the current transaction commits, so the
+     * indexes never hold a change that was rolled back. Runs at once when
+     * there is no transaction.
+     */
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    private void indexRecipe(Recipe recipe) {
+        searchIndex.index(recipe);
+        pantryIndex.index(recipe);
+        suggestIndex.index(recipe);
+        facetSnapshot.index(recipe);
+        randomSampler.index(recipe);
+        suggestedRanking.index(recipe);
+    }
 
-        return recipeRepository.save(recipe);
+    private void indexRating(RecipeRatingDTO rating) {
+        searchIndex.updateRating(rating.getId(), rating.getRating(), rating.getRatingKey());
+        suggestIndex.updateRating(rating.getId(), rating.getRating());
+        facetSnapshot.updateRating(rating.getId(), rating.getRating());
+        suggestedRanking.updateRating(rating.getId(), rating.getRatingSum(), rating.getRatingCount());
+    }
+
+    private void unindexRecipe(Long recipeId) {
+        searchIndex.delete(recipeId);
+        pantryIndex.delete(recipeId);
+        suggestIndex.delete(recipeId);
+        facetSnapshot.delete(recipeId);
+        randomSampler.delete(recipeId);
+        suggestedRanking.delete(recipeId);
     }
 
     public Recipe getRecipeById(Long recipeId) {
@@ -87,12 +245,21 @@ public class RecipeService {
                 .orElseThrow(() -> new ResourceNotFoundException("Recipe not found with id: " + recipeId));
     }
 
+    public StoredImage getRecipeImage(Recipe recipe, ImageVariant variant, ImageFormat format) {
+        if (recipe.getImageHash() == null) {
+            throw new ResourceNotFoundException("Recipe " + recipe.getId() + " has no image");
+        }
+        return imageService.loadImage(recipe.getImageHash(), variant, format);
+    }
+
     public List<Recipe> getAllRecipes() {
         return recipeRepository.findAll();
     }
 
     public Recipe saveRecipe(Recipe recipe) {
-        return recipeRepository.save(recipe);
+        Recipe savedRecipe = recipeRepository.save(recipe);
+        afterCommit(() -> indexRecipe(savedRecipe));
+        return savedRecipe;
     }
 
     public List<Recipe> getRecipesByOwner(Long userId) {
@@ -102,33 +269,48 @@ public class RecipeService {
         return recipeRepository.findByOwner(user);
     }
 
-    public List<Recipe> searchRecipes(RecipeFilterDTO filterDTO) {
-        return recipeRepository.findByFilters(
-            filterDTO.getQuery(),
-            filterDTO.getMinRating(),
-            filterDTO.getMaxCookingTime(),
-            filterDTO.getCuisine(),
-            filterDTO.getMealType(),
-            filterDTO.getDiet(),
-            filterDTO.getMainIngredient(),
-            filterDTO.getServings()
-        );
-    }
+    /**
+     * Returns one page of recipes matching all given filters, in the order
+     * named by {@link RecipeFilterDTO#getSort()}. Searches with a text query
+     * are answered by the search index, ranked by relevance unless another
+     * sort is asked for, and come back as a {@link SearchPage} with facet
+     * counts; all other listings are newest first by default.
+     *
+     * @param active Restricts to published or pending recipes; null for both
+     * @param cursor Opaque cursor from the previous page, null for the first
+     * @throws IllegalArgumentException if the sort or cursor is invalid
+     */
+    public CursorPage<RecipeSummaryDTO> getRecipePage(RecipeFilterDTO filterDTO, Boolean active, String cursor,
+            int limit, boolean includeTotal) {
+        boolean fullText = filterDTO.getQuery() != null && !filterDTO.getQuery().isBlank();
+        RecipeSort sort = fullText && (filterDTO.getSort() == null || filterDTO.getSort().isBlank())
+                ? RecipeSort.RELEVANCE
+                : RecipeSort.fromParameter(filterDTO.getSort());
+        RecipeCursor after = RecipeCursor.decode(cursor, sort);
+        int pageSize = RecipeCursor.pageSize(limit);
 
-    public List<Recipe> searchRecipesByCookingTime(Integer maxCookingTime) {
-        return recipeRepository.findByTimeInMinsLessThanEqual(maxCookingTime);
+        if (fullText) {
+            RecipeSearchResult result = searchIndex.search(filterDTO, active, after, pageSize, includeTotal,
+                    after.isFirstPage());
+            return new SearchPage<>(findSummariesInOrder(result.ids()), result.nextCursor(), result.total(),
+                    result.facets());
+        }
+        if (sort == RecipeSort.RELEVANCE) {
+            throw new IllegalArgumentException("Sorting by relevance requires a search query");
+        }
+        List<RecipeSummaryDTO> rows = recipeRepository.search(filterDTO, active, after, pageSize + 1);
+        Long total = includeTotal ? recipeRepository.count(filterDTO, active) : null;
+        return RecipeCursor.toPage(rows, pageSize, total, sort);
     }
 
-    public List<Recipe> filterRecipes(RecipeFilterDTO filterDTO) {
-        return recipeRepository.findByFilters(
-                filterDTO.getQuery(),
-                filterDTO.getMinRating(),
-                filterDTO.getMaxCookingTime(),
-                filterDTO.getCuisine(),
-                filterDTO.getMealType(),
-                filterDTO.getDiet(),
-                filterDTO.getMainIngredient(),
-                filterDTO.getServings());
+    public CursorPage<RecipeSummaryDTO> getRecipePageByOwner(Long ownerId, String cursor, int limit,
+            boolean includeTotal) {
+        RecipeCursor after = RecipeCursor.decode(cursor, RecipeSort.NEWEST);
+        int pageSize = RecipeCursor.pageSize(limit);
+        List<RecipeSummaryDTO> rows = recipeRepository.findPageByOwner(ownerId, after.getDateCreated(), after.getId(),
+                Limit.of(pageSize + 1));
+        Long total = includeTotal ? recipeRepository.countByOwnerId(ownerId) : null;
+        return RecipeCursor.toPage(rows, pageSize, total, RecipeSort.NEWEST);
     }
 
     public void deleteRecipe(Long recipeId, Long userId) {
@@ -141,6 +323,7 @@ public class RecipeService {
 
         if (user.getRole() == Role.ADMIN) {
             recipeRepository.delete(recipe);
+            afterCommit(() -> unindexRecipe(recipeId));
             return;
         }
 
@@ -150,83 +333,84 @@ public class RecipeService {
         }
 
         recipeRepository.delete(recipe);
+        afterCommit(() -> unindexRecipe(recipeId));
     }
 
-    public Recipe updateRating(Long recipeId, Float rating) {
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new ResourceNotFoundException("Recipe not found with id: " + recipeId));
+    /**
+     * Adds a change in comment ratings to a recipe's rating and updates what
+     * the indexes derive from it, without re-indexing the whole recipe. The
+     * indexes are updated once the caller's transaction commits.
+     *
+     * @param sumDelta   The change in the sum of ratings
+     * @param countDelta The change in the number of ratings
+     */
+    public void addRating(Long recipeId, double sumDelta, int countDelta) {
+        recipeRepository.addRating(recipeId, sumDelta, countDelta);
+        recipeRepository.findRatingById(recipeId).ifPresent(rating -> afterCommit(() -> indexRating(rating)));
+    }
+
+    /**
+     * Finds published recipes that can be cooked from the given pantry, best
+     * covered first.
+     *
+     * @param minCoverage Minimum fraction of a recipe's ingredients that must be in the pantry
+     */
+    public List<PantryMatchDTO> findRecipesByPantry(List<String> pantry, double minCoverage, int limit) {
+        List<PantryMatch> matches = pantryIndex.match(pantry, minCoverage, RecipeCursor.pageSize(limit));
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, RecipeSummaryDTO> byId = recipeRepository.findSummariesByIdIn(
+                matches.stream().map(PantryMatch::recipeId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(RecipeSummaryDTO::getId, Function.identity()));
+        return matches.stream()
+                .filter(match -> byId.containsKey(match.recipeId()))
+                .map(match -> new PantryMatchDTO(byId.get(match.recipeId()), match.matchedIngredients(),
+                        match.totalIngredients(), match.coverage()))
+                .collect(Collectors.toList());
+    }
 
-        // In a real application, you would calculate an average based on user ratings
-        recipe.setRating(rating);
+    /**
+     * Typeahead over published recipe titles, cuisines and ingredient names,
+     * answered from memory.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        int size = Math.max(1, Math.min(limit, SuggestIndex.MAX_SUGGESTIONS));
+        return suggestIndex.suggest(prefix, size).stream().map(SuggestionDTO::new).collect(Collectors.toList());
+    }
 
-        return recipeRepository.save(recipe);
+    /**
+     * Counts published recipes per cuisine, meal type, diet, main ingredient,
+     * servings and cooking time under the given filter, from memory.
+     */
+    public FacetCounts getFacetCounts(RecipeFilterDTO filterDTO) {
+        return facetSnapshot.count(filterDTO);
     }
 
-    public List<Recipe> getSuggestedRecipes() {
-        // Get top rated recipes, limited to 6
-        return recipeRepository.findAll().stream()
-                .sorted((r1, r2) -> Float.compare(r2.getRating(), r1.getRating()))
-                .limit(6)
-                .collect(Collectors.toList());
+    /**
+     * The best six published recipes by rating and recency, read from the
+     * precomputed ranking and loaded with one query by id.
+     */
+    public List<RecipeSummaryDTO> getSuggestedRecipes() {
+        return findSummariesInOrder(suggestedRanking.top(SUGGESTED_RECIPES));
     }
 
-    public List<Recipe> getRandomRecipes(int limit, Long excludeId) {
-        System.out.println("Service - Received excludeId: " + excludeId);
-        if (excludeId != null) {
-            System.out.println("Service - Calling findRandomRecipesExcluding with excludeId: " + excludeId);
-            // Execute debug query first
-            String debugInfo = recipeRepository.debugQuery(limit, excludeId);
-            System.out.println("Repository - " + debugInfo);
-            return recipeRepository.findRandomRecipesExcluding(limit, excludeId);
-        }
-        return recipeRepository.findRandomRecipes(limit);
+    /**
+     * Random published recipes, drawn in memory and loaded with one query by id.
+     *
+     * @param excludeId Recipe to leave out, e.g. the one being viewed; may be null
+     */
+    public List<RecipeSummaryDTO> getRandomRecipes(int limit, Long excludeId) {
+        List<Long> ids = randomSampler.sample(RecipeCursor.pageSize(limit), excludeId);
+        return findSummariesInOrder(ids);
     }
 
-    public List<Recipe> getRecipes(String query, Float minRating, Integer maxCookingTime, String cuisine, String mealType, String diet, String mainIngredient, Integer servings) {
-        List<Recipe> recipes = new ArrayList<>();
-        
-        if (query != null && !query.isEmpty()) {
-            recipes.addAll(recipeRepository.findByTitleContainingIgnoreCase(query));
-        }
-        
-        if (cuisine != null && !cuisine.isEmpty()) {
-            recipes.addAll(recipeRepository.findByCuisine(cuisine));
-        }
-        
-        if (mealType != null && !mealType.isEmpty()) {
-            recipes.addAll(recipeRepository.findByMealType(mealType));
-        }
-        
-        if (diet != null && !diet.isEmpty()) {
-            recipes.addAll(recipeRepository.findByDiet(diet));
-        }
-        
-        if (mainIngredient != null && !mainIngredient.isEmpty()) {
-            recipes.addAll(recipeRepository.findByMainIngredient(mainIngredient));
-        }
-        
-        if (maxCookingTime != null) {
-            recipes.addAll(recipeRepository.findByTimeInMinsLessThanEqual(maxCookingTime));
-        }
-        
-        // If no filters are applied, get all recipes
-        if (recipes.isEmpty()) {
-            recipes = recipeRepository.findAll();
-        }
-        
-        // Apply additional filters
-        if (minRating != null) {
-            recipes = recipes.stream()
-                    .filter(recipe -> recipe.getRating() >= minRating)
-                    .collect(Collectors.toList());
-        }
-        
-        if (servings != null) {
-            recipes = recipes.stream()
-                    .filter(recipe -> recipe.getServings() >= servings)
-                    .collect(Collectors.toList());
+    private List<RecipeSummaryDTO> findSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
-        
-        return recipes;
+        Map<Long, RecipeSummaryDTO> byId = recipeRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(RecipeSummaryDTO::getId, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
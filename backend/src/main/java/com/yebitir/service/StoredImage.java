@@ -0,0 +1,10 @@
+package com.yebitir.service;
+
+import com.yebitir.model.ImageFormat;
+import org.springframework.core.io.Resource;
+
+/**
+ * An image loaded from the store, with the format it was actually found in.
+ */
+public record StoredImage(Resource resource, ImageFormat format) {
+}
@@ -1,23 +1,40 @@
 package com.yebitir.service;
 
+import com.yebitir.dto.CursorPage;
+import com.yebitir.dto.RecipeSummaryDTO;
 import com.yebitir.exception.EmailAlreadyExistsException;
 import com.yebitir.exception.InvalidCredentialsException;
 import com.yebitir.exception.ResourceNotFoundException;
 import com.yebitir.exception.UsernameAlreadyExistsException;
+import com.yebitir.model.ImageFormat;
+import com.yebitir.model.ImageStatus;
+import com.yebitir.model.ImageVariant;
 import com.yebitir.model.Recipe;
 import com.yebitir.model.Role;
 import com.yebitir.model.User;
 import com.yebitir.repository.RecipeRepository;
+import com.yebitir.repository.RecipeSort;
 import com.yebitir.repository.UserRepository;
+import com.yebitir.search.PantryIndex;
+import com.yebitir.search.RandomRecipeSampler;
+import com.yebitir.search.RecipeFacetSnapshot;
+import com.yebitir.search.RecipeSearchIndex;
+import com.yebitir.search.SuggestIndex;
+import com.yebitir.search.SuggestedRecipeRanking;
+import com.yebitir.security.services.PrincipalCache;
+import com.yebitir.security.services.TokenVersions;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import com.yebitir.util.PasswordValidator;
+import com.yebitir.util.RecipeCursor;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -25,13 +42,34 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final RecipeRepository recipeRepository;
+    private final ImageService imageService;
+    private final RecipeSearchIndex searchIndex;
+    private final PantryIndex pantryIndex;
+    private final SuggestIndex suggestIndex;
+    private final RecipeFacetSnapshot facetSnapshot;
+    private final RandomRecipeSampler randomSampler;
+    private final SuggestedRecipeRanking suggestedRanking;
+    private final PrincipalCache principalCache;
+    private final TokenVersions tokenVersions;
 
     @Autowired
     public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
-            RecipeRepository recipeRepository) {
+            RecipeRepository recipeRepository, ImageService imageService, RecipeSearchIndex searchIndex,
+            PantryIndex pantryIndex, SuggestIndex suggestIndex, RecipeFacetSnapshot facetSnapshot,
+            RandomRecipeSampler randomSampler, SuggestedRecipeRanking suggestedRanking,
+            PrincipalCache principalCache, TokenVersions tokenVersions) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.recipeRepository = recipeRepository;
+        this.imageService = imageService;
+        this.searchIndex = searchIndex;
+        this.pantryIndex = pantryIndex;
+        this.suggestIndex = suggestIndex;
+        this.facetSnapshot = facetSnapshot;
+        this.randomSampler = randomSampler;
+        this.suggestedRanking = suggestedRanking;
+        this.principalCache = principalCache;
+        this.tokenVersions = tokenVersions;
     }
 
     public User registerUser(String username, String email, String password, String bio) {
@@ -69,6 +107,8 @@ public class UserService {
             throw new EmailAlreadyExistsException("Email is already registered");
         }
 
+        String oldUsername = user.getUsername();
+        String oldEmail = user.getEmail();
         if (username != null)
             user.setUsername(username);
         if (email != null)
@@ -76,7 +116,9 @@ public class UserService {
         if (bio != null)
             user.setBio(bio);
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        principalCache.evict(oldUsername, oldEmail);
+        return savedUser;
     }
 
     public User getUserByUsername(String username) {
@@ -94,7 +136,12 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
     }
 
-    public void changePassword(Long userId, String oldPassword, String newPassword) {
+    /**
+     * Changes a user's password and revokes all their tokens.
+     *
+     * @return The user, to issue a new token for
+     */
+    public User changePassword(Long userId, String oldPassword, String newPassword) {
         User user = getUserById(userId);
 
         // Verify old password
@@ -109,7 +156,27 @@ public class UserService {
 
         // Update password
         user.setPassword(passwordEncoder.encode(newPassword));
-        userRepository.save(user);
+        bumpTokenVersion(user);
+        User savedUser = userRepository.save(user);
+        tokenVersions.update(userId, savedUser.getTokenVersion());
+        principalCache.evict(user);
+        return savedUser;
+    }
+
+    /**
+     * Revokes all access and refresh tokens of a user by bumping their token
+     * version.
+     */
+    public void revokeTokens(User user) {
+        bumpTokenVersion(user);
+        User savedUser = userRepository.save(user);
+        tokenVersions.update(savedUser.getId(), savedUser.getTokenVersion());
+        principalCache.evict(user);
+    }
+
+    private static void bumpTokenVersion(User user) {
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        user.setTokenVersionChangedAt(LocalDateTime.now());
     }
 
     public void saveRecipe(Long userId, Long recipeId) {
@@ -154,11 +221,13 @@ public class UserService {
         }
     }
 
-    public List<Recipe> getSavedRecipes(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-
-        return new ArrayList<>(user.getSavedRecipes());
+    public CursorPage<RecipeSummaryDTO> getSavedRecipePage(Long userId, String cursor, int limit, boolean includeTotal) {
+        RecipeCursor after = RecipeCursor.decode(cursor, RecipeSort.NEWEST);
+        int pageSize = RecipeCursor.pageSize(limit);
+        List<RecipeSummaryDTO> rows = recipeRepository.findSavedPage(userId, after.getDateCreated(), after.getId(),
+                Limit.of(pageSize + 1));
+        Long total = includeTotal ? recipeRepository.countSavedByUserId(userId) : null;
+        return RecipeCursor.toPage(rows, pageSize, total, RecipeSort.NEWEST);
     }
 
     public void deleteUser(Long userId) {
@@ -166,6 +235,14 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
         userRepository.delete(user);
+        tokenVersions.revoke(userId);
+        principalCache.evict(user);
+        searchIndex.deleteByOwner(userId);
+        pantryIndex.deleteByOwner(userId);
+        suggestIndex.deleteByOwner(userId);
+        facetSnapshot.deleteByOwner(userId);
+        randomSampler.deleteByOwner(userId);
+        suggestedRanking.deleteByOwner(userId);
     }
 
     /**
@@ -189,13 +266,49 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
         user.setActive(active);
-        return userRepository.save(user);
+        if (!active) {
+            // Logging in is refused while inactive, so no newer token can be issued
+            bumpTokenVersion(user);
+        }
+        User savedUser = userRepository.save(user);
+        if (!active) {
+            tokenVersions.update(userId, savedUser.getTokenVersion());
+        }
+        principalCache.evict(user);
+        return savedUser;
     }
 
-    public User updateProfilePicture(Long userId, byte[] imageBytes) {
+    /**
+     * Queues a new profile picture for processing. The current picture stays
+     * visible until the new one is ready.
+     *
+     * @param imageFile Spooled upload; ownership passes to the image service
+     * @return The user, with its picture marked as processing
+     */
+    public User updateProfilePicture(Long userId, Path imageFile) {
+        CompletableFuture<String> pendingImage = imageService.storeImageAsync(imageFile);
         User user = getUserById(userId);
-        user.setProfileImage(imageBytes);
-        return userRepository.save(user);
+
+        userRepository.updateProfileImageStatus(userId, ImageStatus.PROCESSING);
+        user.setProfileImageStatus(ImageStatus.PROCESSING);
+
+        pendingImage.whenComplete((imageHash, error) -> {
+            if (error != null) {
+                log.error("Failed to process profile picture of user {}: {}", userId, error.getMessage());
+                userRepository.updateProfileImageStatus(userId, ImageStatus.FAILED);
+            } else if (userRepository.updateProfileImage(userId, imageHash, ImageStatus.READY) == 0) {
+                // The account was deleted while its picture was processed
+                imageService.deleteIfUnreferenced(imageHash);
+            }
+        });
+        return user;
+    }
+
+    public StoredImage getProfilePicture(User user, ImageVariant variant, ImageFormat format) {
+        if (user.getProfileImageHash() == null) {
+            throw new ResourceNotFoundException("User " + user.getUsername() + " has no profile picture");
+        }
+        return imageService.loadImage(user.getProfileImageHash(), variant, format);
     }
 
     public boolean isRecipeSaved(Long userId, Long recipeId) {
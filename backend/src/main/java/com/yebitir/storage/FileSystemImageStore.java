@@ -0,0 +1,78 @@
+package com.yebitir.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+@Component
+@ConditionalOnProperty(name = "image.store.type", havingValue = "local", matchIfMissing = true)
+@Slf4j
+public class FileSystemImageStore implements ImageStore {
+    private final Path rootDir;
+
+    public FileSystemImageStore(@Value("${image.store.local.root-dir}") String rootDir) throws IOException {
+        this.rootDir = Paths.get(rootDir).toAbsolutePath().normalize();
+        Files.createDirectories(this.rootDir);
+        log.info("Storing images under {}", this.rootDir);
+    }
+
+    @Override
+    public void put(String key, InputStream data, long contentLength) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        // Write to a temp file next to the target so readers never see a partial object
+        Path tempFile = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(data, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public Resource get(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException("Image not found: " + key);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    /**
+     * Maps a key to its path, sharding by the first two characters so a single
+     * directory never ends up holding the whole catalog.
+     */
+    private Path resolve(String key) {
+        if (key == null || key.length() < 3 || key.contains("..") || key.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid image key: " + key);
+        }
+        Path path = rootDir.resolve(key.substring(0, 2)).resolve(key).normalize();
+        if (!path.startsWith(rootDir)) {
+            throw new IllegalArgumentException("Invalid image key: " + key);
+        }
+        return path;
+    }
+}
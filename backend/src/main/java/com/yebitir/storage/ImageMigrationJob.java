@@ -0,0 +1,126 @@
+package com.yebitir.storage;
+
+import com.yebitir.exception.InvalidImageException;
+import com.yebitir.model.ImageStatus;
+import com.yebitir.service.ImageService;
+import com.yebitir.util.FileSpooler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Moves images still stored in the legacy LONGBLOB columns
+ * ({@code recipes.image}, {@code users.profile_image}) into the image store,
+ * generating the usual derivatives on the way. Runs once at startup, a batch
+ * of ids at a time, and spools each blob from the result set to a temp file
+ * so no image or batch is ever held in memory as a whole.
+ * Safe to re-run: migrated rows have their blob cleared.
+ */
+@Component
+@ConditionalOnProperty(name = "image.migration.enabled", havingValue = "true")
+@Slf4j
+public class ImageMigrationJob implements ApplicationRunner {
+    private static final List<LegacyColumn> LEGACY_COLUMNS = List.of(
+            new LegacyColumn("recipes", "image", "image_hash", "image_status"),
+            new LegacyColumn("users", "profile_image", "profile_image_hash", "profile_image_status"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageService imageService;
+    private final int batchSize;
+
+    @Autowired
+    public ImageMigrationJob(JdbcTemplate jdbcTemplate, ImageService imageService,
+            @Value("${image.migration.batch-size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageService = imageService;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (LegacyColumn column : LEGACY_COLUMNS) {
+            migrate(column);
+        }
+    }
+
+    private void migrate(LegacyColumn column) {
+        List<Long> ids;
+        try {
+            ids = nextBatch(column, 0L);
+        } catch (DataAccessException e) {
+            // Fresh schemas never had the legacy column
+            log.info("No legacy images to migrate in {}.{}: {}", column.table(), column.blobColumn(), e.getMessage());
+            return;
+        }
+
+        int migrated = 0;
+        while (!ids.isEmpty()) {
+            for (Long id : ids) {
+                if (migrateRow(column, id)) {
+                    migrated++;
+                }
+            }
+            ids = nextBatch(column, ids.get(ids.size() - 1));
+        }
+
+        if (migrated > 0) {
+            log.info("Migrated {} images from {}.{} to the image store", migrated, column.table(),
+                    column.blobColumn());
+        }
+    }
+
+    private List<Long> nextBatch(LegacyColumn column, Long afterId) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM " + column.table() + " WHERE id > ? AND " + column.blobColumn()
+                        + " IS NOT NULL ORDER BY id LIMIT ?",
+                Long.class, afterId, batchSize);
+    }
+
+    private boolean migrateRow(LegacyColumn column, Long id) {
+        try {
+            String hash = jdbcTemplate.query(
+                    "SELECT " + column.blobColumn() + " FROM " + column.table() + " WHERE id = ?", rs -> {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        try (InputStream blob = rs.getBinaryStream(1)) {
+                            if (blob == null) {
+                                return null;
+                            }
+                            Path imageFile = FileSpooler.spool(blob, null);
+                            try {
+                                return imageService.storeImage(imageFile);
+                            } finally {
+                                Files.deleteIfExists(imageFile);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, id);
+
+            jdbcTemplate.update("UPDATE " + column.table() + " SET " + column.hashColumn() + " = ?, "
+                    + column.statusColumn() + " = ?, " + column.blobColumn() + " = NULL WHERE id = ?",
+                    hash, hash != null ? ImageStatus.READY.name() : null, id);
+            return hash != null;
+        } catch (DataAccessException | UncheckedIOException | InvalidImageException e) {
+            log.error("Failed to migrate image of {} {}: {}", column.table(), id, e.getMessage());
+            return false;
+        }
+    }
+
+    private record LegacyColumn(String table, String blobColumn, String hashColumn, String statusColumn) {
+    }
+}
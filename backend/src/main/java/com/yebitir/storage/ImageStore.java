@@ -0,0 +1,33 @@
+package com.yebitir.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Key/value blob storage for image bytes. Keys are opaque strings chosen by the
+ * caller, so any object store (local disk, an S3 stand-in, ...) can back it.
+ */
+public interface ImageStore {
+
+    /**
+     * Stores the given data under the key, replacing any existing object.
+     *
+     * @param key           The object key
+     * @param data          The data to store, read until EOF
+     * @param contentLength The number of bytes in the stream, or -1 if unknown
+     */
+    void put(String key, InputStream data, long contentLength) throws IOException;
+
+    /**
+     * Returns the stored object as a readable resource.
+     *
+     * @throws java.io.FileNotFoundException if no object exists for the key
+     */
+    Resource get(String key) throws IOException;
+
+    boolean exists(String key);
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.yebitir.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies uploads to temp files through NIO channels, so a file is never held
+ * in the heap as a whole regardless of its size. The caller owns the returned
+ * file and must move or delete it.
+ */
+public class FileSpooler {
+
+    public static Path spool(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return spool(in, null);
+        }
+    }
+
+    /**
+     * Spools a stream into a new temp file.
+     *
+     * @param in        The data to spool, read until EOF
+     * @param directory Directory to create the temp file in, or null for the
+     *                  default temp directory. Spool next to the final location
+     *                  to allow an atomic move afterwards.
+     * @return The temp file
+     */
+    public static Path spool(InputStream in, Path directory) throws IOException {
+        Path tempFile = directory != null
+                ? Files.createTempFile(directory, ".upload-", ".tmp")
+                : Files.createTempFile("upload-", ".tmp");
+        try (ReadableByteChannel source = Channels.newChannel(in);
+                FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+                position += transferred;
+            }
+            return tempFile;
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.yebitir.util;
+
+import com.yebitir.model.ImageVariant;
+import com.yebitir.service.StoredImage;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+public class ImageResponses {
+
+    /**
+     * Builds the response for a content-addressed image. The hash doubles as a
+     * strong ETag, so conditional requests are answered with 304 by Spring
+     * before the body is touched. Requests carrying the current hash as their
+     * {@code v} parameter are marked immutable; anything else must revalidate.
+     * The format is negotiated on {@code Accept}, so caches must vary on it.
+     *
+     * @param imageHash     Hash of the image currently attached to the resource
+     * @param variant       The derivative being served
+     * @param version       The {@code v} request parameter, may be null
+     * @param image         The stored image, in the format it was found in
+     */
+    public static ResponseEntity<Resource> immutableImage(String imageHash, ImageVariant variant, String version,
+            StoredImage image) {
+        CacheControl cacheControl = imageHash.equals(version)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        return ResponseEntity.ok()
+                .eTag(imageHash + "-" + variant.name().toLowerCase() + "-" + image.format().getExtension())
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(image.format().getMediaType())
+                .body(image.resource());
+    }
+}
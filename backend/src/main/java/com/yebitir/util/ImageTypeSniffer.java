@@ -0,0 +1,79 @@
+package com.yebitir.util;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Detects image formats from their leading magic bytes rather than trusting the client's file name.
+ */
+public final class ImageTypeSniffer {
+
+    public enum ImageType {
+        JPEG(MediaType.IMAGE_JPEG, ".jpg"),
+        PNG(MediaType.IMAGE_PNG, ".png"),
+        GIF(MediaType.IMAGE_GIF, ".gif"),
+        WEBP(MediaType.parseMediaType("image/webp"), ".webp");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        ImageType(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final int HEADER_LENGTH = 12;
+
+    private ImageTypeSniffer() {
+    }
+
+    public static Optional<ImageType> sniff(Path file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(HEADER_LENGTH);
+        }
+        return sniff(header);
+    }
+
+    static Optional<ImageType> sniff(byte[] h) {
+        if (startsWith(h, 0, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of(ImageType.JPEG);
+        }
+        if (startsWith(h, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of(ImageType.PNG);
+        }
+        if (startsWith(h, 0, 'G', 'I', 'F', '8') && h.length >= 6 && (h[4] == '7' || h[4] == '9') && h[5] == 'a') {
+            return Optional.of(ImageType.GIF);
+        }
+        if (startsWith(h, 0, 'R', 'I', 'F', 'F') && startsWith(h, 8, 'W', 'E', 'B', 'P')) {
+            return Optional.of(ImageType.WEBP);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.yebitir.util;
+
+import com.yebitir.model.ImageVariant;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Builds the public URLs of the image endpoints. The content hash is appended
+ * as a version parameter so a URL always names one immutable image and can be
+ * cached forever; a new upload produces a new URL. Path variables such as
+ * usernames are percent-encoded.
+ */
+public class ImageUrls {
+
+    public static String recipeImage(Long recipeId, String imageHash, ImageVariant variant) {
+        if (imageHash == null) {
+            return null;
+        }
+        return withVariant(ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/recipes/{id}/image"), variant)
+                .queryParam("v", imageHash)
+                .encode()
+                .buildAndExpand(recipeId)
+                .toUriString();
+    }
+
+    public static String avatar(String username, String imageHash, ImageVariant variant) {
+        if (imageHash == null) {
+            return null;
+        }
+        return withVariant(ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/users/{username}/avatar"), variant)
+                .queryParam("v", imageHash)
+                .encode()
+                .buildAndExpand(username)
+                .toUriString();
+    }
+
+    private static UriComponentsBuilder withVariant(UriComponentsBuilder builder, ImageVariant variant) {
+        if (variant != ImageVariant.FULL) {
+            builder.queryParam("size", variant.name().toLowerCase());
+        }
+        return builder;
+    }
+}
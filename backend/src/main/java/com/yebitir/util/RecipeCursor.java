@@ -0,0 +1,110 @@
+package com.yebitir.util;
+
+import com.yebitir.dto.CursorPage;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.repository.RecipeSort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position in a recipe listing, i.e. the {@code (key, id)} of the last row of
+ * the previous page for a given {@link RecipeSort}. Clients only ever see it
+ * as an opaque base64 token, which is only valid for the sort it came from.
+ */
+public class RecipeCursor {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final RecipeSort sort;
+    private final Object key;
+    private final Long id;
+
+    private RecipeCursor(RecipeSort sort, Object key, Long id) {
+        this.sort = sort;
+        this.key = key;
+        this.id = id;
+    }
+
+    public RecipeSort getSort() {
+        return sort;
+    }
+
+    /**
+     * The sort key of the last row seen, null on the first page.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean isFirstPage() {
+        return key == null;
+    }
+
+    /**
+     * For listings that are always {@link RecipeSort#NEWEST}.
+     */
+    public LocalDateTime getDateCreated() {
+        return (LocalDateTime) key;
+    }
+
+    /**
+     * Decodes a cursor sent by a client. A null or empty token means the first
+     * page.
+     *
+     * @throws IllegalArgumentException if the token is malformed or belongs to another sort
+     */
+    public static RecipeCursor decode(String token, RecipeSort sort) {
+        if (token == null || token.isBlank()) {
+            return new RecipeCursor(sort, null, null);
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !parts[0].equals(sort.name())) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new RecipeCursor(sort, sort.parseKey(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public static String encode(RecipeSort sort, RecipeSummaryDTO recipe) {
+        return encode(sort, sort.keyOf(recipe), recipe.getId());
+    }
+
+    /**
+     * @param key Sort key as {@link RecipeSort#parseKey} will read it back
+     */
+    public static String encode(RecipeSort sort, Object key, Long id) {
+        String value = sort.name() + "|" + key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Clamps a requested page size to {@code [1, MAX_PAGE_SIZE]}.
+     */
+    public static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Builds a page from a query that fetched one row more than the page size,
+     * so the extra row tells whether there is a next page.
+     */
+    public static CursorPage<RecipeSummaryDTO> toPage(List<RecipeSummaryDTO> rows, int pageSize, Long total,
+            RecipeSort sort) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null, total);
+        }
+        List<RecipeSummaryDTO> page = rows.subList(0, pageSize);
+        return new CursorPage<>(page, encode(sort, page.get(pageSize - 1)), total);
+    }
+}
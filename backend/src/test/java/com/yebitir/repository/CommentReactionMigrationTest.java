@@ -0,0 +1,83 @@
+package com.yebitir.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class CommentReactionMigrationTest {
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createTables() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = spy(new JdbcTemplate(dataSource));
+        jdbcTemplate.execute("CREATE TABLE comments (id BIGINT PRIMARY KEY, likes INT, dislikes INT)");
+        jdbcTemplate.execute("CREATE TABLE user_comment_reactions (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "user_id BIGINT, comment_id BIGINT, reaction_type VARCHAR(10))");
+        jdbcTemplate.update("INSERT INTO comments VALUES (1, 3, 1), (2, 1, 0)");
+    }
+
+    @AfterEach
+    void dropTables() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void keepsTheLatestReactionOfEachPairAndRecounts() {
+        react(7, 1, "LIKE");
+        react(7, 1, "DISLIKE");
+        react(7, 1, "LIKE");
+        react(8, 1, "DISLIKE");
+        react(7, 2, "LIKE");
+
+        new CommentReactionMigration(jdbcTemplate).removeDuplicates();
+
+        assertEquals(List.of(Map.of("user_id", 7L, "comment_id", 1L, "reaction_type", "LIKE"),
+                Map.of("user_id", 8L, "comment_id", 1L, "reaction_type", "DISLIKE"),
+                Map.of("user_id", 7L, "comment_id", 2L, "reaction_type", "LIKE")),
+                jdbcTemplate.queryForList("SELECT user_id, comment_id, reaction_type FROM user_comment_reactions " +
+                        "ORDER BY comment_id, user_id"));
+        assertEquals(List.of(Map.of("likes", 1, "dislikes", 1), Map.of("likes", 1, "dislikes", 0)),
+                jdbcTemplate.queryForList("SELECT likes, dislikes FROM comments ORDER BY id"));
+    }
+
+    @Test
+    void skipsTheScanOnceTheUniqueKeyExists() {
+        jdbcTemplate.execute("ALTER TABLE user_comment_reactions ADD CONSTRAINT uk_reaction UNIQUE (user_id, comment_id)");
+        react(7, 1, "LIKE");
+
+        new CommentReactionMigration(jdbcTemplate).removeDuplicates();
+
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Integer.class));
+        assertEquals(List.of(Map.of("likes", 3, "dislikes", 1), Map.of("likes", 1, "dislikes", 0)),
+                jdbcTemplate.queryForList("SELECT likes, dislikes FROM comments ORDER BY id"));
+    }
+
+    @Test
+    void doesNothingWithoutTheTable() {
+        jdbcTemplate.execute("DROP TABLE user_comment_reactions");
+
+        new CommentReactionMigration(jdbcTemplate).removeDuplicates();
+
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Integer.class));
+    }
+
+    private void react(long userId, long commentId, String type) {
+        jdbcTemplate.update("INSERT INTO user_comment_reactions (user_id, comment_id, reaction_type) VALUES (?, ?, ?)",
+                userId, commentId, type);
+    }
+}
@@ -0,0 +1,136 @@
+package com.yebitir.repository;
+
+import com.yebitir.dto.RecipeRatingDTO;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.model.Comment;
+import com.yebitir.model.Recipe;
+import com.yebitir.model.Role;
+import com.yebitir.model.User;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The rating aggregates and sort keys maintained by {@link RecipeRepository},
+ * run against H2 in MySQL mode.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class RecipeRatingQueriesTest {
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User owner;
+
+    @BeforeEach
+    void createOwner() {
+        owner = new User();
+        owner.setUsername("alice");
+        owner.setEmail("alice@example.com");
+        owner.setPassword("hash");
+        owner.setRole(Role.USER);
+        entityManager.persist(owner);
+    }
+
+    @Test
+    void addRatingKeepsSumCountAverageAndKey() {
+        Long id = persistRecipe();
+
+        recipeRepository.addRating(id, 4, 1);
+        recipeRepository.addRating(id, 5, 1);
+        assertRating(id, 4.5f, 9.0, 2, 450);
+
+        // A comment's rating changed from 5 to 2
+        recipeRepository.addRating(id, -3, 0);
+        assertRating(id, 3.0f, 6.0, 2, 300);
+
+        recipeRepository.addRating(id, -4, -1);
+        recipeRepository.addRating(id, -2, -1);
+        assertRating(id, 0f, 0.0, 0, 0);
+    }
+
+    /**
+     * addRating and backfillSortKeys derive the key with separate
+     * expressions; a key written by one must never be corrected by the other.
+     */
+    @Test
+    void addRatingWritesTheKeyBackfillWouldWrite() {
+        List<Long> ids = List.of(persistRecipe(), persistRecipe(), persistRecipe(), persistRecipe());
+        recipeRepository.addRating(ids.get(0), 2, 3);
+        recipeRepository.addRating(ids.get(1), 14, 3);
+        recipeRepository.addRating(ids.get(2), 22.85, 5);
+        recipeRepository.addRating(ids.get(3), 1, 1);
+
+        assertEquals(0, recipeRepository.backfillSortKeys());
+        assertEquals(66, rating(ids.get(0)).getRatingKey());
+        assertEquals(466, rating(ids.get(1)).getRatingKey());
+    }
+
+    @Test
+    void backfillAggregatesRecipesRatedBeforeAggregatesWereKept() {
+        Long id = persistRecipe();
+        persistComment(id, 3f);
+        persistComment(id, 4f);
+        entityManager.flush();
+
+        assertEquals(1, recipeRepository.backfillRatings());
+        recipeRepository.backfillSortKeys();
+        assertRating(id, 3.5f, 7.0, 2, 350);
+
+        // Already aggregated
+        assertEquals(0, recipeRepository.backfillRatings());
+    }
+
+    @Test
+    void summariesCarryTheStoredSortKeys() {
+        Long id = persistRecipe();
+        recipeRepository.addRating(id, 4.57, 1);
+
+        RecipeSummaryDTO summary = recipeRepository.findSummariesByIdIn(List.of(id)).get(0);
+        assertEquals(rating(id).getRatingKey(), summary.getRatingKey());
+        assertEquals(25, summary.getTimeKey());
+        assertEquals(summary.getRatingKey(), RecipeSort.TOP_RATED.keyOf(summary));
+    }
+
+    private Long persistRecipe() {
+        Recipe recipe = RecipeFixture.recipe(null).owner(owner).title("Soup").timeInMins(25)
+                .dateCreated(LocalDateTime.now()).rating(0f).build();
+        return entityManager.persistAndFlush(recipe).getId();
+    }
+
+    private void persistComment(Long recipeId, float rating) {
+        Comment comment = new Comment();
+        comment.setAuthor(owner);
+        comment.setRecipe(entityManager.find(Recipe.class, recipeId));
+        comment.setText("Good");
+        comment.setTime(LocalDateTime.now());
+        comment.setRating(rating);
+        entityManager.persist(comment);
+    }
+
+    private RecipeRatingDTO rating(Long id) {
+        return recipeRepository.findRatingById(id).orElseThrow();
+    }
+
+    private void assertRating(Long id, float average, double sum, int count, int key) {
+        RecipeRatingDTO rating = rating(id);
+        assertEquals(average, rating.getRating(), 1e-6);
+        assertEquals(sum, rating.getRatingSum(), 1e-9);
+        assertEquals(count, rating.getRatingCount());
+        assertEquals(key, rating.getRatingKey());
+    }
+}
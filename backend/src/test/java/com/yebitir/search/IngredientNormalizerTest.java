@@ -0,0 +1,53 @@
+package com.yebitir.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngredientNormalizerTest {
+
+    @Test
+    void foldsTurkishDottedAndDotlessI() {
+        assertEquals("isik", IngredientNormalizer.fold("IŞIK"));
+        assertEquals("isik", IngredientNormalizer.fold("ışık"));
+        assertEquals("incir", IngredientNormalizer.fold("İncir"));
+        assertEquals("sogan", IngredientNormalizer.fold("Soğan"));
+        assertEquals("cilek", IngredientNormalizer.fold("Çilek"));
+    }
+
+    @Test
+    void dropsTurkishQuantitiesUnitsAndNotes() {
+        assertEquals(Optional.of("kirmizi mercimek"),
+                IngredientNormalizer.normalize("2 su bardağı kırmızı mercimek (yıkanmış)"));
+        assertEquals(Optional.of("zeytinyagi"), IngredientNormalizer.normalize("3 yemek kaşığı zeytinyağı"));
+        assertEquals(Optional.of("sogan"), IngredientNormalizer.normalize("1 adet BÜYÜK SOĞAN, ince doğranmış"));
+        assertEquals(Optional.of("tuz"), IngredientNormalizer.normalize("Tuz (isteğe bağlı)"));
+    }
+
+    @Test
+    void keepsAUnitWordThatIsTheIngredient() {
+        assertEquals(Optional.of("su"), IngredientNormalizer.normalize("1 su bardağı su"));
+    }
+
+    @Test
+    void reducesTurkishAndEnglishPlurals() {
+        assertEquals(Optional.of("domates"), IngredientNormalizer.normalize("4 domatesler"));
+        assertEquals(Optional.of("biber"), IngredientNormalizer.normalize("biberler"));
+        assertEquals(Optional.of("garlic"), IngredientNormalizer.normalize("3 cloves garlic, minced"));
+        assertEquals(Optional.of("berry"), IngredientNormalizer.normalize("200 g berries"));
+    }
+
+    @Test
+    void pantryItemsAndRecipeLinesMeetInTheSameName() {
+        assertEquals(IngredientNormalizer.normalize("Kırmızı Mercimek"),
+                IngredientNormalizer.normalize("1.5 su bardağı KIRMIZI MERCİMEK"));
+    }
+
+    @Test
+    void nothingLeftIsEmpty() {
+        assertEquals(Optional.empty(), IngredientNormalizer.normalize("2 adet"));
+        assertEquals(Optional.empty(), IngredientNormalizer.normalize(null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PantryIndexTest {
+    private final PantryIndex index = new PantryIndex();
+
+    @Test
+    void reindexingARecipeKeepsTheSlotCount() {
+        Recipe recipe = recipe(1L, true, "2 cups rice", "1 tbsp butter", "olive oil");
+        index.index(recipe);
+        int slots = index.slotCount();
+
+        for (int i = 0; i < 1000; i++) {
+            recipe.setActive(i % 2 == 1);
+            index.index(recipe);
+        }
+
+        assertEquals(3, slots);
+        assertEquals(slots, index.slotCount());
+        assertEquals(List.of(new PantryMatch(1L, 3, 3)), index.match(List.of("rice", "butter", "oil"), 0, 10));
+    }
+
+    @Test
+    void slotsOfDeletedRecipesAreReused() {
+        index.index(recipe(1L, true, "rice", "butter"));
+        index.delete(1L);
+        index.index(recipe(2L, true, "bulgur", "tomato paste"));
+
+        assertEquals(2, index.slotCount());
+        assertTrue(index.match(List.of("rice", "butter"), 0, 10).isEmpty());
+        assertEquals(List.of(new PantryMatch(2L, 1, 2)), index.match(List.of("bulgur"), 0, 10));
+    }
+
+    @Test
+    void headWordCoversLongerNamesButNotTheReverse() {
+        index.index(recipe(1L, true, "olive oil"));
+        index.index(recipe(2L, true, "oil"));
+
+        assertEquals(2, index.match(List.of("oil"), 1, 10).size());
+        assertEquals(List.of(new PantryMatch(1L, 1, 1)), index.match(List.of("olive oil"), 1, 10));
+    }
+
+    @Test
+    void ranksByCoverageAndSkipsUnpublishedRecipes() {
+        index.index(recipe(1L, true, "rice", "butter", "salt", "chicken"));
+        index.index(recipe(2L, true, "rice", "butter"));
+        index.index(recipe(3L, false, "rice"));
+
+        List<PantryMatch> matches = index.match(List.of("rice", "butter"), 0.5, 10);
+
+        assertEquals(List.of(new PantryMatch(2L, 2, 2), new PantryMatch(1L, 2, 4)), matches);
+    }
+
+    private static Recipe recipe(Long id, boolean active, String... ingredients) {
+        return RecipeFixture.recipe(id).owner(10L).active(active).ingredients(ingredients).build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RandomRecipeSamplerTest {
+    private final RandomRecipeSampler sampler = new RandomRecipeSampler();
+
+    @Test
+    void drawsDistinctPublishedRecipesWithoutTheExcludedOne() {
+        for (long id = 1; id <= 50; id++) {
+            sampler.index(recipe(id, id % 3, id % 7 != 0));
+        }
+        for (int i = 0; i < 1000; i++) {
+            List<Long> sample = sampler.sample(5, 10L);
+            assertEquals(5, sample.size());
+            assertEquals(5, new HashSet<>(sample).size());
+            assertFalse(sample.contains(10L));
+            assertTrue(sample.stream().allMatch(id -> id >= 1 && id <= 50 && id % 7 != 0));
+        }
+    }
+
+    @Test
+    void returnsEveryoneElseWhenAskedForMoreThanThereAre() {
+        for (long id = 1; id <= 4; id++) {
+            sampler.index(recipe(id, 1L, true));
+        }
+
+        assertEquals(Set.of(1L, 2L, 4L), new HashSet<>(sampler.sample(10, 3L)));
+        assertEquals(Set.of(1L, 2L, 3L, 4L), new HashSet<>(sampler.sample(10, 99L)));
+        assertEquals(Set.of(1L, 2L, 3L, 4L), new HashSet<>(sampler.sample(10, null)));
+    }
+
+    @Test
+    void excludingTheLastPositionOrTheOnlyRecipeWorks() {
+        sampler.index(recipe(1L, 1L, true));
+        assertTrue(sampler.sample(3, 1L).isEmpty());
+
+        sampler.index(recipe(2L, 1L, true));
+        assertEquals(List.of(1L), sampler.sample(3, 2L));
+    }
+
+    @Test
+    void removalsKeepTheDenseArrayConsistent() {
+        for (long id = 1; id <= 10; id++) {
+            sampler.index(recipe(id, id <= 3 ? 1L : 2L, true));
+        }
+        sampler.delete(5L);
+        sampler.index(recipe(10L, 2L, false));
+        sampler.deleteByOwner(1L);
+        sampler.index(recipe(4L, 2L, true));
+
+        assertEquals(new TreeSet<>(List.of(4L, 6L, 7L, 8L, 9L)), new TreeSet<>(sampler.sample(100, null)));
+        assertEquals(new TreeSet<>(List.of(4L, 6L, 8L, 9L)), new TreeSet<>(sampler.sample(100, 7L)));
+    }
+
+    @Test
+    void everySubsetIsEquallyLikelyWithAnExclude() {
+        for (long id = 1; id <= 5; id++) {
+            sampler.index(recipe(id, 1L, true));
+        }
+        int trials = 60_000;
+        Map<Set<Long>, Integer> subsets = new HashMap<>();
+        for (int i = 0; i < trials; i++) {
+            subsets.merge(new HashSet<>(sampler.sample(2, 3L)), 1, Integer::sum);
+        }
+
+        // Two of the four others: six subsets of 10 000 expected draws each
+        assertEquals(6, subsets.size());
+        subsets.forEach((subset, draws) -> {
+            assertFalse(subset.contains(3L));
+            assertTrue(Math.abs(draws - trials / 6) < 600, subset + " drawn " + draws + " times");
+        });
+    }
+
+    private static Recipe recipe(Long id, Long ownerId, boolean active) {
+        return RecipeFixture.recipe(id).owner(ownerId).active(active).build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.yebitir.search;
+
+import com.yebitir.dto.RecipeFilterDTO;
+import com.yebitir.model.Recipe;
+import org.junit.jupiter.api.BeforeEach;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecipeFacetSnapshotTest {
+    private final RecipeFacetSnapshot snapshot = new RecipeFacetSnapshot();
+
+    @BeforeEach
+    void indexRecipes() {
+        snapshot.index(recipe(1L, 1L, "Turkish", "Dinner", 4, 20));
+        snapshot.index(recipe(2L, 1L, "Turkish", "Breakfast", 2, 10));
+        snapshot.index(recipe(3L, 2L, "Italian", "Dinner", 4, 40));
+        snapshot.index(recipe(4L, 2L, "italian", "Dinner", 2, null));
+        snapshot.index(recipe(5L, 3L, "Mexican", "Lunch", 4, 90));
+    }
+
+    @Test
+    void countsEveryFacetWithoutFilters() {
+        FacetCounts counts = snapshot.count(new RecipeFilterDTO());
+
+        assertEquals(5, counts.total());
+        assertEquals(Map.of("Turkish", 2L, "Italian", 2L, "Mexican", 1L), counts.facets().get("cuisine"));
+        assertEquals(Map.of("2", 2L, "4", 3L), counts.facets().get("servings"));
+        assertEquals(Map.of("15", 1L, "30", 2L, "45", 3L, "60", 3L, "90", 4L, "120", 4L),
+                counts.facets().get("maxCookingTime"));
+    }
+
+    @Test
+    void aFilteredFacetKeepsCountingItsOtherValues() {
+        RecipeFilterDTO filter = new RecipeFilterDTO();
+        filter.setCuisine("turkish");
+
+        FacetCounts counts = snapshot.count(filter);
+
+        assertEquals(2, counts.total());
+        // The cuisine facet ignores its own filter, the others apply it
+        assertEquals(Map.of("Turkish", 2L, "Italian", 2L, "Mexican", 1L), counts.facets().get("cuisine"));
+        assertEquals(Map.of("Dinner", 1L, "Breakfast", 1L), counts.facets().get("mealType"));
+    }
+
+    @Test
+    void eachFacetAppliesEveryFilterButItsOwn() {
+        RecipeFilterDTO filter = new RecipeFilterDTO();
+        filter.setCuisine("Italian");
+        filter.setMealType("Dinner");
+        filter.setServings(4);
+
+        FacetCounts counts = snapshot.count(filter);
+
+        assertEquals(1, counts.total());
+        // Dinner for four, by cuisine
+        assertEquals(Map.of("Turkish", 1L, "Italian", 1L), counts.facets().get("cuisine"));
+        // Italian for four, by meal type
+        assertEquals(Map.of("Dinner", 1L), counts.facets().get("mealType"));
+        // Italian dinners, by servings
+        assertEquals(Map.of("2", 1L, "4", 1L), counts.facets().get("servings"));
+    }
+
+    @Test
+    void cookingTimeFilterCountsLikeTheBuckets() {
+        RecipeFilterDTO filter = new RecipeFilterDTO();
+        filter.setMaxCookingTime(30);
+
+        FacetCounts counts = snapshot.count(filter);
+
+        assertEquals(2, counts.total());
+        assertEquals(counts.facets().get("maxCookingTime").get("30"), counts.total());
+        assertEquals(Map.of("Turkish", 2L), counts.facets().get("cuisine"));
+    }
+
+    @Test
+    void unpublishedAndDeletedRecipesLeaveTheCounts() {
+        Recipe hidden = recipe(1L, 1L, "Turkish", "Dinner", 4, 20);
+        hidden.setActive(false);
+        snapshot.index(hidden);
+        snapshot.deleteByOwner(2L);
+        snapshot.index(recipe(6L, 3L, "Greek", "Dinner", 4, 20));
+
+        FacetCounts counts = snapshot.count(new RecipeFilterDTO());
+
+        assertEquals(3, counts.total());
+        assertEquals(Map.of("Turkish", 1L, "Mexican", 1L, "Greek", 1L), counts.facets().get("cuisine"));
+        assertEquals(Map.of("Breakfast", 1L, "Lunch", 1L, "Dinner", 1L), counts.facets().get("mealType"));
+    }
+
+    private static Recipe recipe(Long id, Long ownerId, String cuisine, String mealType, Integer servings,
+            Integer timeInMins) {
+        return RecipeFixture.recipe(id).owner(ownerId).cuisine(cuisine).mealType(mealType).servings(servings)
+                .timeInMins(timeInMins).rating(4f).build();
+    }
+}
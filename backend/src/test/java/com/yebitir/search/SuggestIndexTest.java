@@ -0,0 +1,142 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestIndexTest {
+    private final SuggestIndex index = new SuggestIndex();
+
+    @Test
+    void completesTitlesAndIngredientsFromAnyWord() {
+        Recipe soup = recipe(1L, 1L, "Mercimek Çorbası", 4.5f);
+        soup.setCuisine("Turkish");
+        soup.setIngredients(List.of("2 su bardağı kırmızı mercimek"));
+        index.index(soup);
+
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Mercimek Çorbası", 550)),
+                index.suggest("corba", 10));
+        // Equal weights fall back to the text, where upper case sorts first
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Mercimek Çorbası", 550),
+                new Suggestion(SuggestionType.INGREDIENT, "kirmizi mercimek", 550)), index.suggest("merc", 10));
+        assertEquals(List.of(new Suggestion(SuggestionType.CUISINE, "Turkish", 550)), index.suggest("tu", 10));
+        // Cuisines are only reachable from their start
+        assertTrue(index.suggest("ish", 10).isEmpty());
+    }
+
+    @Test
+    void sumsPopularityOverRecipesSharingASuggestion() {
+        index.index(recipe(1L, 1L, "Pilav", 5f));
+        index.index(recipe(2L, 1L, "Pilav", null));
+        index.index(recipe(3L, 1L, "Pide", 4f));
+
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Pilav", 700),
+                new Suggestion(SuggestionType.TITLE, "Pide", 500)), index.suggest("pi", 10));
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Pilav", 700)), index.suggest("pi", 1));
+    }
+
+    @Test
+    void reindexingUpdatesTheCachedListsOnEveryPrefix() {
+        for (long id = 1; id <= 2 * SuggestIndex.MAX_SUGGESTIONS; id++) {
+            index.index(recipe(id, 1L, "salad " + id, 3f));
+        }
+        Recipe last = recipe(99L, 1L, "salsa verde", 0f);
+        index.index(last);
+        assertTrue(index.suggest("s", 10).stream().noneMatch(s -> s.text().equals("salsa verde")));
+
+        last.setRating(5f);
+        index.index(last);
+        for (String prefix : List.of("s", "sa", "sal", "sals", "salsa", "v", "verde")) {
+            assertEquals("salsa verde", index.suggest(prefix, 10).get(0).text(), prefix);
+        }
+
+        last.setActive(false);
+        index.index(last);
+        assertTrue(index.suggest("verde", 10).isEmpty());
+        assertTrue(index.suggest("sals", 10).isEmpty());
+        assertEquals(SuggestIndex.MAX_SUGGESTIONS, index.suggest("sal", 10).size());
+    }
+
+    @Test
+    void ratingUpdatesMoveOnlyThePopularity() {
+        Recipe kofte = recipe(1L, 1L, "Köfte", 3f);
+        kofte.setIngredients(List.of("500 g kıyma"));
+        index.index(kofte);
+        index.index(recipe(2L, 1L, "Kebap", 4f));
+
+        index.updateRating(1L, 4.5f);
+        index.updateRating(3L, 5f);
+
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Köfte", 550),
+                new Suggestion(SuggestionType.INGREDIENT, "kiyma", 550),
+                new Suggestion(SuggestionType.TITLE, "Kebap", 500)), index.suggest("k", 10));
+        assertEquals(List.of(new Suggestion(SuggestionType.INGREDIENT, "kiyma", 550)), index.suggest("kiy", 10));
+    }
+
+    @Test
+    void deleteByOwnerTakesBackOnlyThatOwnersPopularity() {
+        index.index(recipe(1L, 1L, "Baklava", 5f));
+        index.index(recipe(2L, 2L, "Baklava", 3f));
+
+        index.deleteByOwner(1L);
+
+        assertEquals(List.of(new Suggestion(SuggestionType.TITLE, "Baklava", 400)), index.suggest("bak", 10));
+    }
+
+    @Test
+    void matchesABruteForceRankingUnderRandomChanges() {
+        Random random = new Random(17);
+        String[] titles = { "a", "ab", "abc", "abd", "ac", "b", "ba", "bab", "bb", "c", "ca", "cab", "cb", "abca",
+                "abcb", "abcc" };
+        Map<Long, Recipe> live = new HashMap<>();
+        for (int step = 0; step < 3000; step++) {
+            long id = random.nextInt(60);
+            if (random.nextInt(5) == 0) {
+                index.delete(id);
+                live.remove(id);
+            } else {
+                Float rating = random.nextInt(4) == 0 ? null : random.nextInt(501) / 100f;
+                Recipe recipe = recipe(id, 1L, titles[random.nextInt(titles.length)], rating);
+                recipe.setActive(random.nextInt(6) != 0);
+                index.index(recipe);
+                live.put(id, recipe);
+            }
+            if (step % 50 == 0) {
+                for (String prefix : List.of("a", "ab", "abc", "b", "ba", "c", "ca", "cab", "abcc")) {
+                    assertEquals(expected(live, prefix), index.suggest(prefix, SuggestIndex.MAX_SUGGESTIONS),
+                            "prefix " + prefix + " at step " + step);
+                }
+            }
+        }
+    }
+
+    private static List<Suggestion> expected(Map<Long, Recipe> live, String prefix) {
+        Map<String, Long> weights = new HashMap<>();
+        for (Recipe recipe : live.values()) {
+            if (recipe.getActive() && recipe.getTitle().startsWith(prefix)) {
+                long popularity = 100 + (recipe.getRating() != null ? (long) Math.floor(recipe.getRating() * 100.0) : 0);
+                weights.merge(recipe.getTitle(), popularity, Long::sum);
+            }
+        }
+        List<Suggestion> suggestions = new ArrayList<>();
+        weights.forEach((title, weight) -> suggestions.add(new Suggestion(SuggestionType.TITLE, title, weight)));
+        suggestions.sort(Comparator.comparingLong(Suggestion::weight).reversed().thenComparing(Suggestion::text));
+        return suggestions.size() > SuggestIndex.MAX_SUGGESTIONS
+                ? suggestions.subList(0, SuggestIndex.MAX_SUGGESTIONS)
+                : suggestions;
+    }
+
+    private static Recipe recipe(Long id, Long ownerId, String title, Float rating) {
+        return RecipeFixture.recipe(id).owner(ownerId).title(title).rating(rating).build();
+    }
+}
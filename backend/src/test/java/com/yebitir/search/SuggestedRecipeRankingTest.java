@@ -0,0 +1,45 @@
+package com.yebitir.search;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SuggestedRecipeRankingTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private final SuggestedRecipeRanking ranking = new SuggestedRecipeRanking(3.0, 5, 180);
+
+    @Test
+    void wellRatedRecipeOutranksNewUnratedOneForMonths() {
+        ranking.index(recipe(1L, NOW.minusDays(60), 50.0, 10));
+        ranking.index(recipe(2L, NOW, 0.0, 0));
+
+        assertEquals(List.of(1L, 2L), ranking.top(2));
+    }
+
+    @Test
+    void ratingUpdateRanksLikeAFullReindex() {
+        ranking.index(recipe(1L, NOW.minusDays(10), 20.0, 5));
+        ranking.index(recipe(2L, NOW.minusDays(20), 15.0, 5));
+        ranking.index(recipe(3L, NOW, 0.0, 0));
+
+        ranking.updateRating(2L, 45.0, 9);
+        ranking.updateRating(4L, 5.0, 1);
+
+        SuggestedRecipeRanking reindexed = new SuggestedRecipeRanking(3.0, 5, 180);
+        reindexed.index(recipe(1L, NOW.minusDays(10), 20.0, 5));
+        reindexed.index(recipe(2L, NOW.minusDays(20), 45.0, 9));
+        reindexed.index(recipe(3L, NOW, 0.0, 0));
+        assertEquals(reindexed.top(10), ranking.top(10));
+        assertEquals(List.of(2L, 1L, 3L), ranking.top(10));
+    }
+
+    private static Recipe recipe(Long id, LocalDateTime dateCreated, double ratingSum, int ratingCount) {
+        return RecipeFixture.recipe(id).dateCreated(dateCreated).ratings(ratingSum, ratingCount).build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.yebitir.security;
+
+import com.yebitir.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalibratedPasswordEncoderTest {
+
+    @Test
+    void hashesAndMatchesWithTheConfiguredCost() {
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(5, 4, 100, 1, 1);
+        try {
+            String hash = encoder.encode("secret");
+
+            assertTrue(hash.startsWith("$2a$05$"));
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("wrong", hash));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void upgradesOnlyHashesOfALowerCost() {
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(5, 4, 100, 1, 1);
+        try {
+            assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+            assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+            // Instances calibrated to a lower cost keep hashes of a higher one
+            assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+            assertFalse(encoder.upgradeEncoding("not a bcrypt hash"));
+            assertFalse(encoder.upgradeEncoding(null));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void calibratesNoLowerThanTheMinimumCost() {
+        // A zero target never allows raising the cost
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(0, 4, 0, 1, 1);
+        try {
+            assertTrue(encoder.encode("secret").startsWith("$2a$04$"));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsHashesBeyondThePoolAndQueue() throws Exception {
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(12, 4, 100, 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return encoder.encode("secret");
+                }));
+            }
+            start.countDown();
+
+            int rejected = 0;
+            for (Future<?> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof TooManyRequestsException);
+                    rejected++;
+                }
+            }
+            // One hashes, one waits and the rest are turned away
+            assertTrue(rejected >= 1);
+        } finally {
+            callers.shutdownNow();
+            encoder.shutdown();
+        }
+    }
+}
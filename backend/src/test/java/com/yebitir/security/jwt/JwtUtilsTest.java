@@ -0,0 +1,94 @@
+package com.yebitir.security.jwt;
+
+import com.yebitir.model.Role;
+import com.yebitir.model.User;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtUtilsTest {
+    private static final String SECRET = "testSecretKeyThatIsLongEnoughForHmacSha256SigningOfTokens";
+
+    private final User user = new User();
+
+    @BeforeEach
+    void createUser() {
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setRole(Role.ADMIN);
+        user.setTokenVersion(3);
+    }
+
+    @Test
+    void accessTokensCarryTheClaimsOfTheUser() {
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 900_000, 1_209_600_000, 100);
+
+        Claims claims = jwtUtils.verifyAndExtract(jwtUtils.generateJwtToken(user)).orElseThrow();
+
+        assertEquals("alice", claims.getSubject());
+        assertEquals(JwtUtils.TYPE_ACCESS, claims.get(JwtUtils.CLAIM_TOKEN_TYPE, String.class));
+        assertEquals(7L, claims.get(JwtUtils.CLAIM_USER_ID, Long.class));
+        assertEquals("ADMIN", claims.get(JwtUtils.CLAIM_ROLE, String.class));
+        assertEquals(3, claims.get(JwtUtils.CLAIM_TOKEN_VERSION, Integer.class));
+    }
+
+    @Test
+    void refreshTokensHaveTheirOwnTypeAndId() {
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 900_000, 1_209_600_000, 100);
+
+        Claims first = jwtUtils.verifyAndExtract(jwtUtils.generateRefreshToken(user)).orElseThrow();
+        Claims second = jwtUtils.verifyAndExtract(jwtUtils.generateRefreshToken(user)).orElseThrow();
+
+        assertEquals(JwtUtils.TYPE_REFRESH, first.get(JwtUtils.CLAIM_TOKEN_TYPE, String.class));
+        assertNotEquals(first.getId(), second.getId());
+    }
+
+    @Test
+    void returnsCachedClaimsForATokenVerifiedBefore() {
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 900_000, 1_209_600_000, 100);
+        String token = jwtUtils.generateJwtToken(user);
+
+        assertSame(jwtUtils.verifyAndExtract(token).orElseThrow(), jwtUtils.verifyAndExtract(token).orElseThrow());
+    }
+
+    @Test
+    void rejectsTamperedTokensEvenWhenTheOriginalIsCached() {
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 900_000, 1_209_600_000, 100);
+        String token = jwtUtils.generateJwtToken(user);
+        assertTrue(jwtUtils.verifyAndExtract(token).isPresent());
+
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+        String otherSignature = (signature.charAt(0) == 'A' ? 'B' : 'A') + signature.substring(1);
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + otherSignature;
+
+        assertFalse(jwtUtils.verifyAndExtract(tampered).isPresent());
+        assertFalse(jwtUtils.verifyAndExtract("not.a.token").isPresent());
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnotherKey() {
+        JwtUtils other = new JwtUtils("anotherSecretKeyThatIsLongEnoughForHmacSha256SigningOfTokens",
+                900_000, 1_209_600_000, 100);
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 900_000, 1_209_600_000, 100);
+
+        assertFalse(jwtUtils.verifyAndExtract(other.generateJwtToken(user)).isPresent());
+    }
+
+    @Test
+    void rejectsCachedTokensOnceTheyExpire() throws InterruptedException {
+        JwtUtils jwtUtils = new JwtUtils(SECRET, 1_000, 1_209_600_000, 100);
+        String token = jwtUtils.generateJwtToken(user);
+        assertTrue(jwtUtils.verifyAndExtract(token).isPresent());
+
+        // Expiry has a resolution of one second
+        Thread.sleep(2_100);
+
+        assertFalse(jwtUtils.verifyAndExtract(token).isPresent());
+    }
+}
@@ -0,0 +1,115 @@
+package com.yebitir.security.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenVersionsTest {
+    private static final long RETENTION_MS = Duration.ofDays(14).toMillis();
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createUsers() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:versions;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, token_version INT NOT NULL, " +
+                "token_version_changed_at TIMESTAMP(6))");
+    }
+
+    @AfterEach
+    void dropUsers() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void loadsOnlyVersionsBumpedWithinTheRetention() {
+        insert(1, 2, Duration.ofDays(1));
+        insert(2, 5, Duration.ofDays(20));
+        insert(3, 0, null);
+        TokenVersions versions = new TokenVersions(jdbcTemplate, RETENTION_MS);
+
+        versions.load();
+
+        assertEquals(1, versions.size());
+        assertFalse(versions.isCurrent(1L, 1));
+        assertTrue(versions.isCurrent(1L, 2));
+        // Every token issued before the bump 20 days ago has expired
+        assertTrue(versions.isCurrent(2L, 5));
+        assertTrue(versions.isCurrent(3L, 0));
+    }
+
+    @Test
+    void localBumpAppliesAtOnce() {
+        TokenVersions versions = new TokenVersions(jdbcTemplate, RETENTION_MS);
+        versions.load();
+
+        versions.update(1L, 1);
+
+        assertFalse(versions.isCurrent(1L, 0));
+        assertTrue(versions.isCurrent(1L, 1));
+        // A refresh never lowers a version
+        insert(1, 0, Duration.ZERO);
+        versions.refresh();
+        assertTrue(versions.isCurrent(1L, 1));
+    }
+
+    @Test
+    void refreshReadsOnlyChangesSinceThePreviousOne() {
+        TokenVersions versions = new TokenVersions(jdbcTemplate, RETENTION_MS);
+        versions.load();
+
+        insert(1, 3, Duration.ZERO);
+        // Stamped long before the last refresh, so not read again
+        insert(2, 4, Duration.ofHours(1));
+        versions.refresh();
+
+        assertFalse(versions.isCurrent(1L, 2));
+        assertTrue(versions.isCurrent(1L, 3));
+        assertTrue(versions.isCurrent(2L, 3));
+    }
+
+    @Test
+    void dropsEntriesOnceTheirTokensHaveExpired() throws InterruptedException {
+        TokenVersions versions = new TokenVersions(jdbcTemplate, 50);
+        versions.load();
+        versions.update(1L, 1);
+        versions.revoke(2L);
+        assertFalse(versions.isCurrent(2L, 0));
+
+        Thread.sleep(100);
+        versions.refresh();
+
+        assertEquals(0, versions.size());
+        assertTrue(versions.isCurrent(1L, 1));
+    }
+
+    @Test
+    void revokedUserAcceptsNoVersion() {
+        TokenVersions versions = new TokenVersions(jdbcTemplate, RETENTION_MS);
+        versions.load();
+        versions.update(1L, 4);
+
+        versions.revoke(1L);
+        versions.update(1L, 5);
+
+        assertFalse(versions.isCurrent(1L, 4));
+        assertFalse(versions.isCurrent(1L, 5));
+    }
+
+    private void insert(long id, int version, Duration age) {
+        Timestamp changedAt = age != null ? new Timestamp(System.currentTimeMillis() - age.toMillis()) : null;
+        jdbcTemplate.update("MERGE INTO users KEY (id) VALUES (?, ?, ?)", id, version, changedAt);
+    }
+}
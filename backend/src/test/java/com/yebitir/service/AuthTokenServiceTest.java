@@ -0,0 +1,155 @@
+package com.yebitir.service;
+
+import com.yebitir.dto.JwtResponse;
+import com.yebitir.exception.InvalidTokenException;
+import com.yebitir.model.Role;
+import com.yebitir.model.User;
+import com.yebitir.security.jwt.JwtUtils;
+import com.yebitir.security.services.TokenRevocations;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Refresh tokens are rotated on use, and a token used again is treated as
+ * stolen unless it was rotated moments ago.
+ */
+class AuthTokenServiceTest {
+    private static final long GRACE_MS = 10_000;
+
+    private final JwtUtils jwtUtils = new JwtUtils(
+            "testSecretKeyThatIsLongEnoughForHmacSha256SigningOfTokens", 900_000, 1_209_600_000, 100);
+    private final UserService userService = mock(UserService.class);
+    private final User user = new User();
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TokenRevocations tokenRevocations;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:revocations;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE revoked_tokens (jti VARCHAR(36) PRIMARY KEY, " +
+                "expires_at TIMESTAMP(6) NOT NULL, revoked_at TIMESTAMP(6))");
+        tokenRevocations = new TokenRevocations(jdbcTemplate, 1000);
+
+        user.setId(1L);
+        user.setUsername("alice");
+        user.setRole(Role.USER);
+        when(userService.getUserById(1L)).thenReturn(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void rotatesRefreshTokens() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+
+        JwtResponse rotated = service.refresh(refreshToken);
+
+        assertNotEquals(refreshToken, rotated.getRefreshToken());
+        assertTrue(tokenRevocations.isRevoked(jwtUtils.verifyAndExtract(refreshToken).orElseThrow().getId()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Integer.class));
+        // The rotated token is still good
+        service.refresh(rotated.getRefreshToken());
+    }
+
+    @Test
+    void rejectsTokenReusedAfterTheGraceWindowAndRevokesAllTokens() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+        service.refresh(refreshToken);
+        String jti = jwtUtils.verifyAndExtract(refreshToken).orElseThrow().getId();
+        jdbcTemplate.update("UPDATE revoked_tokens SET revoked_at = ? WHERE jti = ?",
+                new Timestamp(System.currentTimeMillis() - GRACE_MS - 1000), jti);
+        // A fresh instance reads the older rotation from the database
+        AuthTokenService restarted = service(loadedRevocations(), GRACE_MS);
+
+        InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> restarted.refresh(refreshToken));
+
+        assertEquals("Refresh token has already been used", e.getMessage());
+        verify(userService).revokeTokens(user);
+    }
+
+    @Test
+    void rejectsTokenReusedWithinTheGraceWindowWithoutRevokingTokens() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+        service.refresh(refreshToken);
+
+        assertThrows(InvalidTokenException.class, () -> service.refresh(refreshToken));
+
+        verify(userService, never()).revokeTokens(user);
+    }
+
+    @Test
+    void appliesTheGraceWindowToTokensRotatedByAnotherInstance() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        // Loaded before the rotation, so only the database knows about it
+        AuthTokenService other = service(loadedRevocations(), GRACE_MS);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+        service.refresh(refreshToken);
+
+        assertThrows(InvalidTokenException.class, () -> other.refresh(refreshToken));
+
+        verify(userService, never()).revokeTokens(user);
+    }
+
+    @Test
+    void revokesAllTokensOnAnyReuseWithoutGraceWindow() {
+        AuthTokenService service = service(tokenRevocations, 0);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+        service.refresh(refreshToken);
+
+        assertThrows(InvalidTokenException.class, () -> service.refresh(refreshToken));
+
+        verify(userService).revokeTokens(user);
+    }
+
+    @Test
+    void rejectsRefreshTokensOfAnOlderVersion() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        String refreshToken = service.issueTokens(user).getRefreshToken();
+        user.setTokenVersion(1);
+
+        assertThrows(InvalidTokenException.class, () -> service.refresh(refreshToken));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Integer.class));
+    }
+
+    @Test
+    void rejectsAccessTokens() {
+        AuthTokenService service = service(tokenRevocations, GRACE_MS);
+        String accessToken = service.issueTokens(user).getToken();
+
+        assertThrows(InvalidTokenException.class, () -> service.refresh(accessToken));
+    }
+
+    private AuthTokenService service(TokenRevocations revocations, long graceMs) {
+        return new AuthTokenService(jwtUtils, revocations, userService, graceMs);
+    }
+
+    private TokenRevocations loadedRevocations() {
+        TokenRevocations revocations = new TokenRevocations(jdbcTemplate, 1000);
+        revocations.load();
+        return revocations;
+    }
+}
@@ -0,0 +1,249 @@
+package com.yebitir.service;
+
+import com.yebitir.dto.CommentDTO;
+import com.yebitir.dto.CommentReactionDTO;
+import com.yebitir.exception.TooManyRequestsException;
+import com.yebitir.model.Comment;
+import com.yebitir.model.Recipe;
+import com.yebitir.model.Role;
+import com.yebitir.model.User;
+import com.yebitir.model.UserCommentReaction.ReactionType;
+import com.yebitir.repository.CommentRepository;
+import com.yebitir.repository.RecipeRepository;
+import com.yebitir.repository.UserRepository;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Coalescing and flushing of reactions, against H2 in MySQL mode. Each flush
+ * commits, so the tables are emptied after every test.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CommentReactionBufferTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    private JdbcTemplate database;
+    private Long alice;
+    private Long bob;
+    private Long commentId;
+
+    @BeforeEach
+    void createComment() {
+        database = spy(jdbcTemplate);
+        alice = userRepository.save(user("alice")).getId();
+        bob = userRepository.save(user("bob")).getId();
+        Recipe recipe = recipeRepository.save(RecipeFixture.recipe(null).owner(userRepository.getReferenceById(alice))
+                .title("Soup").dateCreated(LocalDateTime.now()).build());
+
+        Comment comment = new Comment();
+        comment.setAuthor(userRepository.getReferenceById(alice));
+        comment.setRecipe(recipe);
+        comment.setText("Good");
+        comment.setTime(LocalDateTime.now());
+        commentId = commentRepository.save(comment).getId();
+    }
+
+    @AfterEach
+    void deleteAll() {
+        for (String table : List.of("user_comment_reactions", "comments", "recipes", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void coalescesTogglesUntilTheFlush() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        CommentReactionDTO counts = buffer.toggle(commentId, alice, ReactionType.DISLIKE);
+        buffer.toggle(commentId, bob, ReactionType.LIKE);
+
+        assertEquals(0, counts.getLikes());
+        assertEquals(1, counts.getDislikes());
+        assertTrue(counts.isUserDisliked());
+        assertEquals(List.of(), reactions());
+        assertEquals(Map.of("likes", 0, "dislikes", 0), storedCounts());
+
+        buffer.flush();
+
+        assertEquals(List.of(Map.of("user_id", alice, "reaction_type", "DISLIKE"),
+                Map.of("user_id", bob, "reaction_type", "LIKE")), reactions());
+        assertEquals(Map.of("likes", 1, "dislikes", 1), storedCounts());
+    }
+
+    @Test
+    void pendingReactionsAreShownWithStoredOnes() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.flush();
+        buffer.toggle(commentId, bob, ReactionType.LIKE);
+
+        CommentDTO comment = new CommentDTO();
+        comment.setId(commentId);
+        comment.setLikes(1);
+        comment.setDislikes(0);
+        buffer.applyPending(List.of(comment), bob);
+
+        assertEquals(2, comment.getLikes());
+        assertTrue(comment.getUserLiked());
+    }
+
+    @Test
+    void reactionToggledBackIsNeverWritten() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.flush();
+
+        buffer.toggle(commentId, alice, ReactionType.DISLIKE);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        // Would remove the stored reaction if anything of the batch was written
+        jdbcTemplate.update("DELETE FROM user_comment_reactions");
+        buffer.flush();
+
+        assertEquals(List.of(), reactions());
+        assertEquals(Map.of("likes", 1, "dislikes", 0), storedCounts());
+    }
+
+    @Test
+    void reactionOfADeletedUserChangesNoCount() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.toggle(commentId, bob, ReactionType.LIKE);
+        userRepository.deleteById(bob);
+
+        buffer.flush();
+
+        assertEquals(List.of(Map.of("user_id", alice, "reaction_type", "LIKE")), reactions());
+        assertEquals(Map.of("likes", 1, "dislikes", 0), storedCounts());
+    }
+
+    @Test
+    void removingAReactionAlreadyGoneChangesNoCount() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.flush();
+
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        jdbcTemplate.update("DELETE FROM user_comment_reactions");
+        buffer.flush();
+
+        assertEquals(Map.of("likes", 1, "dislikes", 0), storedCounts());
+    }
+
+    @Test
+    void failedBatchIsRetriedAheadOfNewerReactions() {
+        CommentReactionBuffer buffer = buffer(10, 5);
+        doThrow(new DataAccessResourceFailureException("Database down")).doCallRealMethod()
+                .when(database).batchUpdate(anyString(), anyList());
+
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.flush();
+        assertEquals(List.of(), reactions());
+        buffer.toggle(commentId, bob, ReactionType.DISLIKE);
+
+        // Still shown while pending
+        assertEquals(2, buffer.toggle(commentId, bob, ReactionType.LIKE).getLikes());
+
+        // The retried batch is written first, then the newer one
+        buffer.flush();
+        assertEquals(List.of(Map.of("user_id", alice, "reaction_type", "LIKE"),
+                Map.of("user_id", bob, "reaction_type", "LIKE")), reactions());
+        assertEquals(Map.of("likes", 2, "dislikes", 0), storedCounts());
+    }
+
+    @Test
+    void batchIsDroppedAfterTheLastAttempt() {
+        CommentReactionBuffer buffer = buffer(10, 2);
+        doThrow(new DataAccessResourceFailureException("Database down"))
+                .when(database).batchUpdate(anyString(), anyList());
+
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+        buffer.flush();
+        buffer.flush();
+        buffer.flush();
+
+        CommentDTO comment = new CommentDTO();
+        comment.setId(commentId);
+        comment.setLikes(0);
+        comment.setDislikes(0);
+        buffer.applyPending(List.of(comment), alice);
+        assertEquals(0, comment.getLikes());
+        assertFalse(comment.getUserLiked());
+    }
+
+    @Test
+    void refusesNewReactionsOnceTooManyArePending() {
+        CommentReactionBuffer buffer = buffer(1, 5);
+        buffer.toggle(commentId, alice, ReactionType.LIKE);
+
+        assertThrows(TooManyRequestsException.class, () -> buffer.toggle(commentId, bob, ReactionType.LIKE));
+        // A user's pending reaction can still change
+        assertTrue(buffer.toggle(commentId, alice, ReactionType.DISLIKE).isUserDisliked());
+    }
+
+    private CommentReactionBuffer buffer(int maxPending, int maxFlushAttempts) {
+        return new CommentReactionBuffer(database, transactionTemplate, commentRepository,
+                mock(TaskScheduler.class), 1000, maxPending, maxFlushAttempts);
+    }
+
+    private List<Map<String, Object>> reactions() {
+        return jdbcTemplate.queryForList("SELECT user_id, reaction_type FROM user_comment_reactions " +
+                "ORDER BY user_id");
+    }
+
+    private Map<String, Object> storedCounts() {
+        return jdbcTemplate.queryForMap("SELECT likes, dislikes FROM comments WHERE id = ?", commentId);
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("hash");
+        user.setRole(Role.USER);
+        return user;
+    }
+}
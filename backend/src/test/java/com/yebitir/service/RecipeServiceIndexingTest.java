@@ -0,0 +1,122 @@
+package com.yebitir.service;
+
+import com.yebitir.dto.RecipeRatingDTO;
+import com.yebitir.model.Recipe;
+import com.yebitir.model.Role;
+import com.yebitir.model.User;
+import com.yebitir.repository.RecipeRepository;
+import com.yebitir.repository.UserRepository;
+import com.yebitir.search.PantryIndex;
+import com.yebitir.search.RandomRecipeSampler;
+import com.yebitir.search.RecipeFacetSnapshot;
+import com.yebitir.search.RecipeSearchIndex;
+import com.yebitir.search.SuggestIndex;
+import com.yebitir.search.SuggestedRecipeRanking;
+import com.yebitir.support.RecipeFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The in-memory and search indexes follow the database only once a change
+ * is committed.
+ */
+class RecipeServiceIndexingTest {
+    private final RecipeRepository recipeRepository = mock(RecipeRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final RecipeSearchIndex searchIndex = mock(RecipeSearchIndex.class);
+    private final SuggestIndex suggestIndex = mock(SuggestIndex.class);
+    private final RecipeFacetSnapshot facetSnapshot = mock(RecipeFacetSnapshot.class);
+    private final SuggestedRecipeRanking suggestedRanking = mock(SuggestedRecipeRanking.class);
+    private final RecipeService recipeService = new RecipeService(recipeRepository, userRepository,
+            mock(UserService.class), mock(ImageService.class), searchIndex, mock(PantryIndex.class), suggestIndex,
+            facetSnapshot, mock(RandomRecipeSampler.class), suggestedRanking);
+
+    @BeforeEach
+    void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void endTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void ratingReachesTheIndexesOnlyAfterCommit() {
+        when(recipeRepository.findRatingById(1L)).thenReturn(Optional.of(new RecipeRatingDTO(1L, 4.5f, 9.0, 2, 450)));
+
+        recipeService.addRating(1L, 5, 1);
+        verify(recipeRepository).addRating(1L, 5, 1);
+        verify(searchIndex, never()).updateRating(any(), any(), any());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        verify(searchIndex).updateRating(1L, 4.5f, 450);
+        verify(suggestIndex).updateRating(1L, 4.5f);
+        verify(facetSnapshot).updateRating(1L, 4.5f);
+        verify(suggestedRanking).updateRating(1L, 9.0, 2);
+    }
+
+    @Test
+    void rolledBackRatingNeverReachesTheIndexes() {
+        when(recipeRepository.findRatingById(1L)).thenReturn(Optional.of(new RecipeRatingDTO(1L, 4.5f, 9.0, 2, 450)));
+
+        recipeService.addRating(1L, 5, 1);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(searchIndex, never()).updateRating(any(), any(), any());
+        verify(suggestedRanking, never()).updateRating(any(), any(), any());
+    }
+
+    @Test
+    void rolledBackDeleteKeepsTheRecipeIndexed() {
+        Recipe recipe = RecipeFixture.recipe(1L).owner(10L).build();
+        User admin = new User();
+        admin.setId(20L);
+        admin.setRole(Role.ADMIN);
+        when(recipeRepository.findById(1L)).thenReturn(Optional.of(recipe));
+        when(userRepository.findById(20L)).thenReturn(Optional.of(admin));
+
+        recipeService.deleteRecipe(1L, 20L);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        verify(searchIndex, never()).delete(1L);
+
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        recipeService.deleteRecipe(1L, 20L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        verify(searchIndex).delete(1L);
+    }
+
+    @Test
+    void indexesAtOnceOutsideATransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+        when(recipeRepository.findRatingById(1L)).thenReturn(Optional.of(new RecipeRatingDTO(1L, 3f, 3.0, 1, 300)));
+
+        recipeService.addRating(1L, 3, 1);
+        verify(searchIndex).updateRating(1L, 3f, 300);
+
+        // Restored for endTransaction
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    // Runs the callbacks a transaction manager would run on completion
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.yebitir.support;
+
+import com.yebitir.model.Recipe;
+import com.yebitir.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Builds recipes for tests. A recipe starts active, with no ingredients and
+ * without an owner; {@link #owner(Long)} adds a detached owner for the
+ * in-memory indexes, which only read its id.
+ */
+public final class RecipeFixture {
+    private final Recipe recipe = new Recipe();
+
+    private RecipeFixture(Long id) {
+        recipe.setId(id);
+        recipe.setActive(true);
+        recipe.setIngredients(List.of());
+    }
+
+    public static RecipeFixture recipe(Long id) {
+        return new RecipeFixture(id);
+    }
+
+    public RecipeFixture owner(Long ownerId) {
+        User owner = new User();
+        owner.setId(ownerId);
+        return owner(owner);
+    }
+
+    public RecipeFixture owner(User owner) {
+        recipe.setOwner(owner);
+        return this;
+    }
+
+    public RecipeFixture active(boolean active) {
+        recipe.setActive(active);
+        return this;
+    }
+
+    public RecipeFixture title(String title) {
+        recipe.setTitle(title);
+        return this;
+    }
+
+    public RecipeFixture ingredients(String... ingredients) {
+        recipe.setIngredients(List.of(ingredients));
+        return this;
+    }
+
+    public RecipeFixture cuisine(String cuisine) {
+        recipe.setCuisine(cuisine);
+        return this;
+    }
+
+    public RecipeFixture mealType(String mealType) {
+        recipe.setMealType(mealType);
+        return this;
+    }
+
+    public RecipeFixture servings(Integer servings) {
+        recipe.setServings(servings);
+        return this;
+    }
+
+    public RecipeFixture timeInMins(Integer timeInMins) {
+        recipe.setTimeInMins(timeInMins);
+        return this;
+    }
+
+    public RecipeFixture rating(Float rating) {
+        recipe.setRating(rating);
+        return this;
+    }
+
+    public RecipeFixture ratings(double ratingSum, int ratingCount) {
+        recipe.setRatingSum(ratingSum);
+        recipe.setRatingCount(ratingCount);
+        return this;
+    }
+
+    public RecipeFixture dateCreated(LocalDateTime dateCreated) {
+        recipe.setDateCreated(dateCreated);
+        return this;
+    }
+
+    public Recipe build() {
+        return recipe;
+    }
+}
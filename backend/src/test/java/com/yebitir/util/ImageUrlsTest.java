@@ -0,0 +1,45 @@
+package com.yebitir.util;
+
+import com.yebitir.model.ImageVariant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageUrlsTest {
+
+    @BeforeEach
+    void bindRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContextPath("/api");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void unbindRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void encodesUsernamesInAvatarUrls() {
+        assertEquals("http://localhost/api/users/ay%C5%9Fe%20k%3Fz%23/avatar?size=thumbnail&v=abc",
+                ImageUrls.avatar("ayşe k?z#", "abc", ImageVariant.THUMBNAIL));
+    }
+
+    @Test
+    void omitsTheSizeOfFullImages() {
+        assertEquals("http://localhost/api/recipes/7/image?v=abc",
+                ImageUrls.recipeImage(7L, "abc", ImageVariant.FULL));
+    }
+
+    @Test
+    void returnsNoUrlWithoutImage() {
+        assertNull(ImageUrls.recipeImage(7L, null, ImageVariant.CARD));
+        assertNull(ImageUrls.avatar("alice", null, ImageVariant.CARD));
+    }
+}
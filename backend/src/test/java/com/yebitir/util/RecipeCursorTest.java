@@ -0,0 +1,166 @@
+package com.yebitir.util;
+
+import com.yebitir.dto.CursorPage;
+import com.yebitir.dto.RecipeSummaryDTO;
+import com.yebitir.repository.RecipeSort;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeCursorTest {
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+
+    @Test
+    void roundTripsTheKeyOfEverySort() {
+        RecipeSummaryDTO recipe = recipe(42L, NOON, 457, 25);
+
+        RecipeCursor newest = RecipeCursor.decode(RecipeCursor.encode(RecipeSort.NEWEST, recipe), RecipeSort.NEWEST);
+        assertEquals(NOON, newest.getDateCreated());
+        assertEquals(42L, newest.getId());
+
+        RecipeCursor topRated = RecipeCursor.decode(RecipeCursor.encode(RecipeSort.TOP_RATED, recipe),
+                RecipeSort.TOP_RATED);
+        assertEquals(457, topRated.getKey());
+
+        RecipeCursor quickest = RecipeCursor.decode(RecipeCursor.encode(RecipeSort.QUICKEST, recipe),
+                RecipeSort.QUICKEST);
+        assertEquals(25, quickest.getKey());
+
+        RecipeCursor relevance = RecipeCursor.decode(RecipeCursor.encode(RecipeSort.RELEVANCE, 1.25f, 42L),
+                RecipeSort.RELEVANCE);
+        assertEquals(1.25f, relevance.getKey());
+    }
+
+    @Test
+    void missingValuesGetTheirDocumentedKeys() {
+        RecipeSummaryDTO recipe = recipe(1L, NOON, null, null);
+
+        assertEquals(0, RecipeSort.TOP_RATED.keyOf(recipe));
+        assertEquals(RecipeSort.UNKNOWN_TIME, RecipeSort.QUICKEST.keyOf(recipe));
+    }
+
+    @Test
+    void keysAreTheStoredColumnsRatherThanRecomputed() {
+        RecipeSummaryDTO recipe = recipe(1L, NOON, 456, 45);
+        recipe.setRating(4.57f);
+        recipe.setTimeInMins(30);
+
+        assertEquals(456, RecipeSort.TOP_RATED.keyOf(recipe));
+        assertEquals(45, RecipeSort.QUICKEST.keyOf(recipe));
+    }
+
+    @Test
+    void tokensAreUrlSafeAndOpaque() {
+        String token = RecipeCursor.encode(RecipeSort.NEWEST, recipe(7L, NOON, 300, 10));
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void blankTokenIsTheFirstPage() {
+        assertTrue(RecipeCursor.decode(null, RecipeSort.NEWEST).isFirstPage());
+        assertTrue(RecipeCursor.decode(" ", RecipeSort.QUICKEST).isFirstPage());
+    }
+
+    @Test
+    void rejectsMalformedTokensAndTokensOfAnotherSort() {
+        String quickest = RecipeCursor.encode(RecipeSort.QUICKEST, recipe(7L, NOON, 300, 10));
+
+        assertThrows(IllegalArgumentException.class, () -> RecipeCursor.decode(quickest, RecipeSort.TOP_RATED));
+        assertThrows(IllegalArgumentException.class, () -> RecipeCursor.decode("not a cursor!", RecipeSort.NEWEST));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecipeCursor.decode(RecipeCursor.encode(RecipeSort.NEWEST, "yesterday", 1L), RecipeSort.NEWEST));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecipeCursor.decode(RecipeCursor.encode(RecipeSort.TOP_RATED, 450, null), RecipeSort.TOP_RATED));
+    }
+
+    @Test
+    void clampsPageSizes() {
+        assertEquals(1, RecipeCursor.pageSize(0));
+        assertEquals(20, RecipeCursor.pageSize(20));
+        assertEquals(RecipeCursor.MAX_PAGE_SIZE, RecipeCursor.pageSize(10_000));
+    }
+
+    @Test
+    void toPageUsesTheExtraRowOnlyToSignalANextPage() {
+        List<RecipeSummaryDTO> rows = List.of(recipe(3L, NOON, 500, 10), recipe(2L, NOON, 400, 10),
+                recipe(1L, NOON, 300, 10));
+
+        CursorPage<RecipeSummaryDTO> full = RecipeCursor.toPage(rows, 2, null, RecipeSort.NEWEST);
+        assertEquals(List.of(3L, 2L), ids(full.getData()));
+        assertEquals(2L, RecipeCursor.decode(full.getNextCursor(), RecipeSort.NEWEST).getId());
+
+        CursorPage<RecipeSummaryDTO> last = RecipeCursor.toPage(rows, 3, 3L, RecipeSort.NEWEST);
+        assertNull(last.getNextCursor());
+        assertEquals(3L, last.getTotal());
+    }
+
+    /**
+     * Pages through rows that mostly share their sort key, the way the
+     * repository does, and expects every row exactly once and in order.
+     */
+    @Test
+    void idBreaksTiesSoPagesNeitherRepeatNorSkipRows() {
+        List<RecipeSummaryDTO> rows = new ArrayList<>();
+        for (long id = 1; id <= 23; id++) {
+            rows.add(recipe(id, id % 2 == 0 ? NOON : NOON.minusDays(1), id % 3 == 0 ? 449 : 450,
+                    id % 4 == 0 ? null : 30));
+        }
+        for (RecipeSort sort : List.of(RecipeSort.NEWEST, RecipeSort.TOP_RATED, RecipeSort.QUICKEST)) {
+            List<RecipeSummaryDTO> ordered = rows.stream().sorted(order(sort)).collect(Collectors.toList());
+
+            List<Long> seen = new ArrayList<>();
+            String cursor = null;
+            do {
+                RecipeCursor after = RecipeCursor.decode(cursor, sort);
+                List<RecipeSummaryDTO> fetched = ordered.stream()
+                        .filter(row -> after.isFirstPage() || isAfter(sort, row, after))
+                        .limit(5 + 1)
+                        .collect(Collectors.toList());
+                CursorPage<RecipeSummaryDTO> page = RecipeCursor.toPage(fetched, 5, null, sort);
+                seen.addAll(ids(page.getData()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(ids(ordered), seen, sort.name());
+        }
+    }
+
+    private static Comparator<RecipeSummaryDTO> order(RecipeSort sort) {
+        Comparator<RecipeSummaryDTO> ascending = (a, b) -> compare(sort.keyOf(a), a.getId(), sort.keyOf(b), b.getId());
+        return sort.isDescending() ? ascending.reversed() : ascending;
+    }
+
+    private static boolean isAfter(RecipeSort sort, RecipeSummaryDTO row, RecipeCursor after) {
+        int position = compare(sort.keyOf(row), row.getId(), after.getKey(), after.getId());
+        return sort.isDescending() ? position < 0 : position > 0;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object key, Long id, Object otherKey, Long otherId) {
+        int byKey = ((Comparable) key).compareTo(otherKey);
+        return byKey != 0 ? byKey : id.compareTo(otherId);
+    }
+
+    private static List<Long> ids(List<RecipeSummaryDTO> rows) {
+        return rows.stream().map(RecipeSummaryDTO::getId).collect(Collectors.toList());
+    }
+
+    private static RecipeSummaryDTO recipe(Long id, LocalDateTime dateCreated, Integer ratingKey, Integer timeKey) {
+        RecipeSummaryDTO recipe = new RecipeSummaryDTO();
+        recipe.setId(id);
+        recipe.setDateCreated(dateCreated);
+        recipe.setRatingKey(ratingKey);
+        recipe.setTimeKey(timeKey);
+        return recipe;
+    }
+}
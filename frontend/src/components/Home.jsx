@@ -5,7 +5,7 @@ import { useTheme } from '../context/ThemeContext';
 import AnimatedFoodIcons from './AnimatedFoodIcons';
 import RecipeCard from './RecipeCard';
 import './Home.css';
-import { getAllRecipes } from '../services/ApiService';
+import { getRecipesPage } from '../services/ApiService';
 
 // Custom navigation function that ensures scroll to top
 const useCustomNavigate = () => {
@@ -233,13 +233,9 @@ const Home = () => {
   const fetchRecipes = async () => {
     try {
       setLoading(true);
-      const recipesData = await getAllRecipes();
-      
-      if (!Array.isArray(recipesData)) {
-        setRecipes([]);
-      } else {
-        setRecipes(recipesData);
-      }
+      // Only the first nine recipes are featured
+      const { data: recipesData } = await getRecipesPage(null, 9);
+      setRecipes(recipesData);
       
     } catch {
       setError('Failed to load recipes');
@@ -76,7 +76,7 @@ const ProfilePage = ({ initialTab = 'myRecipes' }) => {
   };
 
   const { theme } = useTheme();
-  const { logout, token, isLoggedIn } = useAuth();
+  const { logout, token, isLoggedIn, updateToken } = useAuth();
   const navigate = useNavigate();
   
   // Refs for scroll animations
@@ -305,10 +305,14 @@ const ProfilePage = ({ initialTab = 'myRecipes' }) => {
     }
 
     try {
-      await updateUserPassword(token, {
+      const response = await updateUserPassword(token, {
         currentPassword: formData.currentPassword,
         newPassword: formData.newPassword
       });
+      // The password change revoked the old token
+      if (response?.token) {
+        updateToken(response.token, response.refreshToken, response.expiresIn);
+      }
       
       showNotification('success', 'Password updated successfully!');
       setFormData(prev => ({
@@ -524,7 +528,7 @@ const ProfilePage = ({ initialTab = 'myRecipes' }) => {
                 >
                   {userData.profileImage ? (
                     <img
-                      src={`data:image/jpeg;base64,${userData.profileImage}`}
+                      src={userData.profileImage}
                       alt="Profile"
                       className="w-full h-full object-cover"
                     />
@@ -1,10 +1,10 @@
-import React, { useState, useEffect, useCallback } from 'react';
+import React, { useState, useEffect, useCallback, useRef } from 'react';
 import { useTheme } from '../context/ThemeContext';
 import { useNavigate, useLocation } from 'react-router-dom';
 import RecipeCard from './RecipeCard';
 import './SearchPage.css';
 import AnimatedFoodIcons from './AnimatedFoodIcons';
-import { searchRecipes } from '../services/ApiService';
+import { searchRecipesPage } from '../services/ApiService';
 import { cuisineOptions, mealTypeOptions, dietOptions, mainIngredientOptions } from '../constants/recipeOptions';
 
 // Memoized AnimatedFoodIconsBackground component to prevent re-renders
@@ -39,8 +39,12 @@ const SearchPage = () => {
   
   // State for recipes
   const [recipes, setRecipes] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState(null);
+  // Incremented per search, so a page loaded for older filters is dropped
+  const searchIdRef = useRef(0);
   // State for filters
   const [filters, setFilters] = useState(getInitialFilters());
   
@@ -74,6 +78,7 @@ const SearchPage = () => {
   
   // Fetch recipes from backend with debouncing
   const fetchRecipes = useCallback(async () => {
+    const searchId = ++searchIdRef.current;
     setLoading(true);
     setError(null);
     
@@ -82,16 +87,41 @@ const SearchPage = () => {
         ...filters
       };
       
-      const data = await searchRecipes(searchParams);
-      setRecipes(data);
+      const page = await searchRecipesPage(searchParams);
+      if (searchId !== searchIdRef.current) {
+        return;
+      }
+      setRecipes(page.data);
+      setNextCursor(page.nextCursor);
     } catch (err) {
       console.error('Error fetching recipes:', err);
       setError('Failed to load recipes. Please try again later.');
     } finally {
-      setLoading(false);
+      if (searchId === searchIdRef.current) {
+        setLoading(false);
+      }
     }
   }, [filters]);
 
+  // Append the next page of the current search
+  const loadMoreRecipes = async () => {
+    const searchId = searchIdRef.current;
+    setLoadingMore(true);
+    try {
+      const page = await searchRecipesPage({ ...filters }, nextCursor);
+      if (searchId !== searchIdRef.current) {
+        return;
+      }
+      setRecipes(prev => prev.concat(page.data));
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      console.error('Error loading more recipes:', err);
+      setError('Failed to load recipes. Please try again later.');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   useEffect(() => {
     const timer = setTimeout(() => {
       fetchRecipes();
@@ -284,6 +314,17 @@ const SearchPage = () => {
             ))}
           </div>
         )}
+
+        {!loading && !error && nextCursor && (
+          <button
+            onClick={loadMoreRecipes}
+            disabled={loadingMore}
+            className="load-more-button"
+            style={{ backgroundColor: theme.headerfooter.logoRed, color: 'white' }}
+          >
+            {loadingMore ? 'Loading...' : 'Load more recipes'}
+          </button>
+        )}
       </div>
     </div>
   );
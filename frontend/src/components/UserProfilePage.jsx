@@ -156,7 +156,7 @@ const UserProfilePage = () => {
             >
               {userProfile.profileImage ? (
                 <img 
-                  src={`data:image/jpeg;base64,${userProfile.profileImage}`}
+                  src={userProfile.profileImage}
                   alt={userProfile.username} 
                   className="w-full h-full object-cover"
                 />
@@ -1,5 +1,74 @@
 import React, { createContext, useState, useContext, useEffect } from 'react';
-import { login as apiLogin, register as apiRegister, getUserProfile } from '../services/ApiService';
+import {
+  login as apiLogin,
+  logout as apiLogout,
+  register as apiRegister,
+  refreshAccessToken,
+  getUserProfile
+} from '../services/ApiService';
+
+// Refresh the access token this long before it expires
+const REFRESH_MARGIN_MS = 60 * 1000;
+
+// Name of the lock that lets one tab at a time refresh the tokens
+const REFRESH_LOCK = 'yebitir-token-refresh';
+
+// Store the tokens of a login, refresh or password change. The access token
+// goes last, as other tabs react to it changing.
+const storeTokens = (token, refreshToken, expiresIn) => {
+  if (refreshToken) {
+    localStorage.setItem('refreshToken', refreshToken);
+  }
+  if (expiresIn) {
+    localStorage.setItem('tokenExpiresAt', String(Date.now() + expiresIn));
+  }
+  localStorage.setItem('token', token);
+};
+
+const clearTokens = () => {
+  localStorage.removeItem('token');
+  localStorage.removeItem('refreshToken');
+  localStorage.removeItem('tokenExpiresAt');
+};
+
+// Whether the stored access token was issued recently, i.e. by another tab
+const hasFreshStoredToken = () => {
+  const expiresAt = Number(localStorage.getItem('tokenExpiresAt'));
+  return Boolean(localStorage.getItem('token')) && expiresAt - Date.now() > 2 * REFRESH_MARGIN_MS;
+};
+
+// Run the callback in one tab at a time where the browser supports locks
+const withRefreshLock = (callback) => {
+  if (navigator.locks) {
+    return navigator.locks.request(REFRESH_LOCK, callback);
+  }
+  return callback();
+};
+
+// Exchange the stored refresh token for new tokens, returning the access token.
+// The server accepts each refresh token once, so tabs take turns and a tab
+// uses the tokens another tab stored while it waited instead of refreshing.
+const refreshStoredToken = () => withRefreshLock(async () => {
+  if (hasFreshStoredToken()) {
+    return localStorage.getItem('token');
+  }
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!refreshToken) {
+    throw new Error('No refresh token available');
+  }
+  try {
+    const response = await refreshAccessToken(refreshToken);
+    storeTokens(response.token, response.refreshToken, response.expiresIn);
+    return response.token;
+  } catch (error) {
+    // Without locks another tab may have used the refresh token at the same
+    // time; its new tokens are only good if it stored them since
+    if (localStorage.getItem('refreshToken') !== refreshToken && hasFreshStoredToken()) {
+      return localStorage.getItem('token');
+    }
+    throw error;
+  }
+});
 
 // Create the AuthContext
 const AuthContext = createContext();
@@ -22,8 +91,18 @@ export const AuthProvider = ({ children }) => {
     const initializeAuth = async () => {
       try {
         const savedUser = localStorage.getItem('currentUser');
-        const savedToken = localStorage.getItem('token');
+        let savedToken = localStorage.getItem('token');
         const savedIsLoggedIn = localStorage.getItem('isLoggedIn');
+        const savedExpiresAt = Number(localStorage.getItem('tokenExpiresAt'));
+
+        // The access token expired while the app was closed
+        if (savedToken && savedExpiresAt && savedExpiresAt <= Date.now()) {
+          try {
+            savedToken = await refreshStoredToken();
+          } catch (error) {
+            console.error('Error refreshing token:', error);
+          }
+        }
         
         if (savedToken && savedToken !== 'undefined') {
           setToken(savedToken);
@@ -38,7 +117,7 @@ export const AuthProvider = ({ children }) => {
             console.error('Error fetching user profile:', error);
             // Clear potentially invalid token
             localStorage.removeItem('currentUser');
-            localStorage.removeItem('token');
+            clearTokens();
             localStorage.setItem('isLoggedIn', 'false');
             setToken(null);
             setCurrentUser(null);
@@ -59,7 +138,7 @@ export const AuthProvider = ({ children }) => {
         console.error('Error initializing auth state:', error);
         // Clear potentially corrupted data
         localStorage.removeItem('currentUser');
-        localStorage.removeItem('token');
+        clearTokens();
         localStorage.setItem('isLoggedIn', 'false');
       } finally {
         // Mark as initialized to prevent unnecessary redirects
@@ -70,6 +149,39 @@ export const AuthProvider = ({ children }) => {
     initializeAuth();
   }, []);
 
+  // Refresh the access token shortly before it expires
+  useEffect(() => {
+    if (!token) {
+      return undefined;
+    }
+    const expiresAt = Number(localStorage.getItem('tokenExpiresAt'));
+    if (!expiresAt || !localStorage.getItem('refreshToken')) {
+      return undefined;
+    }
+
+    const timer = setTimeout(async () => {
+      try {
+        setToken(await refreshStoredToken());
+      } catch (error) {
+        console.error('Error refreshing token:', error);
+        logout();
+      }
+    }, Math.max(0, expiresAt - Date.now() - REFRESH_MARGIN_MS));
+    return () => clearTimeout(timer);
+  // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [token]);
+
+  // Pick up tokens another tab stored, which also moves the refresh timer
+  useEffect(() => {
+    const handleStorage = (event) => {
+      if (event.key === 'token' && event.newValue && token) {
+        setToken(event.newValue);
+      }
+    };
+    window.addEventListener('storage', handleStorage);
+    return () => window.removeEventListener('storage', handleStorage);
+  }, [token]);
+
   // Login function
   const login = async (email, password) => {
     try {
@@ -80,8 +192,8 @@ export const AuthProvider = ({ children }) => {
         throw new Error('Invalid response from server');
       }
 
-      // Extract user and token from response
-      const { data: { user, token } } = response;
+      // Extract user and tokens from response
+      const { data: { user, token, refreshToken, expiresIn } } = response;
       
       if (!user || !token) {
         throw new Error('Missing user or token in response');
@@ -94,7 +206,7 @@ export const AuthProvider = ({ children }) => {
       
       // Store in localStorage for persistence
       localStorage.setItem('currentUser', JSON.stringify(user));
-      localStorage.setItem('token', token);
+      storeTokens(token, refreshToken, expiresIn);
       localStorage.setItem('isLoggedIn', 'true');
       
       return { success: true, user };
@@ -122,13 +234,25 @@ export const AuthProvider = ({ children }) => {
     }
   };
 
+  // Replace the tokens, e.g. after a password change revoked the old ones
+  const updateToken = (newToken, newRefreshToken, expiresIn) => {
+    storeTokens(newToken, newRefreshToken, expiresIn);
+    setToken(newToken);
+  };
+
   // Logout function
   const logout = () => {
+    // Revoke the tokens on the server, logging out locally regardless
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (token || refreshToken) {
+      apiLogout(token, refreshToken).catch(error => console.error('Logout error:', error));
+    }
+
     setCurrentUser(null);
     setToken(null);
     setIsLoggedIn(false);
     localStorage.removeItem('currentUser');
-    localStorage.removeItem('token');
+    clearTokens();
     localStorage.setItem('isLoggedIn', 'false');
   };
 
@@ -141,6 +265,7 @@ export const AuthProvider = ({ children }) => {
     login,
     register,
     logout,
+    updateToken,
     isAdmin: currentUser?.role === 'ADMIN'
   };
 
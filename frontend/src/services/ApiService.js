@@ -79,7 +79,9 @@ export const login = async (email, password) => {
       return {
         data: {
           user: result.user || result,
-          token: result.token
+          token: result.token,
+          refreshToken: result.refreshToken,
+          expiresIn: result.expiresIn
         }
       };
     }
@@ -145,33 +147,51 @@ export const register = async (name, email, password) => {
 };
 
 // Recipe services
-export const getAllRecipes = async () => {
-  const response = await fetch(`${API_BASE_URL}/recipes`);
-  const result = await handleResponse(response);
-  
-  // Handle object-style response with numeric keys
-  if (result && typeof result === 'object') {
-    // Convert object with numeric keys to array
-    const recipeArray = Object.keys(result)
-      .filter(key => !isNaN(key)) // Only take numeric keys
-      .map(key => result[key]);
-    
-    if (recipeArray.length > 0) {
-      return recipeArray;
-    }
+
+// Listings are keyset-paginated as { data, nextCursor, total }. The
+// nextCursor of a page fetches the next one and is null on the last page.
+const LIST_PAGE_SIZE = 100;
+
+const withCursor = (url, cursor, limit) => {
+  const params = new URLSearchParams();
+  if (cursor) {
+    params.set('cursor', cursor);
   }
-  
-  // Fallback to previous handling
-  if (Array.isArray(result)) {
-    return result;
-  } else if (result.recipes && Array.isArray(result.recipes)) {
-    return result.recipes;
-  } else if (result.data && Array.isArray(result.data)) {
-    return result.data;
+  if (limit) {
+    params.set('limit', limit);
   }
-  
-  console.warn('Unexpected recipes response format:', result);
-  return [];
+  const queryString = params.toString();
+  if (!queryString) {
+    return url;
+  }
+  return `${url}${url.includes('?') ? '&' : '?'}${queryString}`;
+};
+
+const toPage = (result) => ({
+  data: Array.isArray(result?.data) ? result.data : [],
+  nextCursor: result?.nextCursor || null,
+  total: result?.total ?? null
+});
+
+// Follow nextCursor to the last page, for callers that need every recipe
+const fetchAllPages = async (fetchPage) => {
+  let recipes = [];
+  let cursor = null;
+  do {
+    const page = await fetchPage(cursor);
+    recipes = recipes.concat(page.data);
+    cursor = page.nextCursor;
+  } while (cursor);
+  return recipes;
+};
+
+export const getRecipesPage = async (cursor = null, limit = null) => {
+  const response = await fetch(withCursor(`${API_BASE_URL}/recipes`, cursor, limit));
+  return toPage(await handleResponse(response));
+};
+
+export const getAllRecipes = async () => {
+  return fetchAllPages(cursor => getRecipesPage(cursor, LIST_PAGE_SIZE));
 };
 
 export const getRecipeById = async (id) => {
@@ -324,73 +344,36 @@ export const deleteRecipe = async (id, token) => {
   return handleResponse(response);
 };
 
-export const searchRecipes = async (query) => {
-  // If query is an object (for filtering), convert to query string
-  if (typeof query === 'object') {
-    const params = new URLSearchParams();
-    
-    // Only add non-empty filters that aren't "Any"
-    Object.entries(query).forEach(([key, value]) => {
-      if (value && value !== '' && value !== 'Any' && key !== 'limit') {
-        params.append(key, value);
-      }
-    });
-    
-    // Append the limit parameter if it exists (only once)
-    if (query.limit) {
-      params.append('limit', query.limit);
-    }
-    
-    const queryString = params.toString();
-    const response = await fetch(`${API_BASE_URL}/recipes/search?${queryString}`);
-    const result = await handleResponse(response);
-    
-    // Ensure we return an array
-    if (Array.isArray(result)) {
-      return result;
-    } else if (result && typeof result === 'object') {
-      if (result.data && Array.isArray(result.data)) {
-        return result.data;
-      } else if (result.recipes && Array.isArray(result.recipes)) {
-        return result.recipes;
-      } else {
-        // Convert object with numeric keys to array if needed
-        const recipeArray = Object.keys(result)
-          .filter(key => !isNaN(key))
-          .map(key => result[key]);
-        if (recipeArray.length > 0) {
-          return recipeArray;
-        }
-      }
-    }
-    return []; // Return empty array if no valid data format found
-  } else {
-    // Handle text search
-    const response = await fetch(`${API_BASE_URL}/recipes/search?query=${encodeURIComponent(query)}`);
-    const result = await handleResponse(response);
-    
-    // Apply the same array handling logic
-    if (Array.isArray(result)) {
-      return result;
-    } else if (result && typeof result === 'object') {
-      if (result.data && Array.isArray(result.data)) {
-        return result.data;
-      } else if (result.recipes && Array.isArray(result.recipes)) {
-        return result.recipes;
-      } else {
-        const recipeArray = Object.keys(result)
-          .filter(key => !isNaN(key))
-          .map(key => result[key]);
-        if (recipeArray.length > 0) {
-          return recipeArray;
-        }
-      }
+// Build the query string of a search from a text query or a filter object
+const searchQueryString = (query) => {
+  if (typeof query !== 'object') {
+    return `query=${encodeURIComponent(query)}`;
+  }
+  const params = new URLSearchParams();
+  // Only add non-empty filters that aren't "Any"
+  Object.entries(query).forEach(([key, value]) => {
+    if (value && value !== '' && value !== 'Any' && key !== 'limit') {
+      params.append(key, value);
     }
-    return []; // Return empty array if no valid data format found
+  });
+  return params.toString();
+};
+
+export const searchRecipesPage = async (query, cursor = null, limit = null) => {
+  const url = `${API_BASE_URL}/recipes/search?${searchQueryString(query)}`;
+  const response = await fetch(withCursor(url, cursor, limit));
+  return toPage(await handleResponse(response));
+};
+
+export const searchRecipes = async (query) => {
+  // An explicit limit asks for a single page of that size
+  if (typeof query === 'object' && query.limit) {
+    return (await searchRecipesPage(query, null, query.limit)).data;
   }
+  return fetchAllPages(cursor => searchRecipesPage(query, cursor, LIST_PAGE_SIZE));
 };
 
-export const filterRecipes = async (filterData) => {
+export const filterRecipesPage = async (filterData, cursor = null, limit = null) => {
   // Clean up filter data to remove "Any" values
   const cleanedFilters = {};
   Object.entries(filterData).forEach(([key, value]) => {
@@ -399,12 +382,16 @@ export const filterRecipes = async (filterData) => {
     }
   });
   
-  const response = await fetch(`${API_BASE_URL}/recipes/filter`, {
+  const response = await fetch(withCursor(`${API_BASE_URL}/recipes/filter`, cursor, limit), {
     method: 'POST',
     headers: { 'Content-Type': 'application/json' },
     body: JSON.stringify(cleanedFilters)
   });
-  return handleResponse(response);
+  return toPage(await handleResponse(response));
+};
+
+export const filterRecipes = async (filterData) => {
+  return fetchAllPages(cursor => filterRecipesPage(filterData, cursor, LIST_PAGE_SIZE));
 };
 
 // Comment services
@@ -545,6 +532,39 @@ export const deleteComment = async (token, commentId) => {
     return deleteOwnComment(token, commentId);
   }
 };
+// Exchange a refresh token for a new access and refresh token
+export const refreshAccessToken = async (refreshToken) => {
+  const response = await fetch(`${API_BASE_URL}/auth/refresh`, {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      'Accept': 'application/json'
+    },
+    credentials: 'include',
+    mode: 'cors',
+    body: JSON.stringify({ refreshToken })
+  });
+  return handleResponse(response);
+};
+
+// Revoke the access and refresh token on the server
+export const logout = async (token, refreshToken) => {
+  const headers = {
+    'Content-Type': 'application/json',
+    'Accept': 'application/json'
+  };
+  if (token) {
+    headers['Authorization'] = `Bearer ${token}`;
+  }
+  const response = await fetch(`${API_BASE_URL}/auth/logout`, {
+    method: 'POST',
+    headers,
+    credentials: 'include',
+    mode: 'cors',
+    body: JSON.stringify({ refreshToken })
+  });
+  return handleResponse(response);
+};
 
 // User services
 export const getUserProfile = async (token) => {
@@ -621,25 +641,28 @@ export const deleteUserAccount = async (token) => {
   return handleResponse(response);
 };
 
+export const getUserRecipesPage = async (username, cursor = null, limit = null) => {
+  const response = await fetch(withCursor(`${API_BASE_URL}/users/${username}/recipes`, cursor, limit));
+  if (!response.ok) {
+    throw new Error(`HTTP error! status: ${response.status}`);
+  }
+  return toPage(await response.json());
+};
+
 export const getUserRecipes = async (username) => {
   try {
-    const response = await fetch(`${API_BASE_URL}/users/${username}/recipes`);
-    if (!response.ok) {
-      throw new Error(`HTTP error! status: ${response.status}`);
-    }
-    const data = await response.json();
-    return data;
+    return await fetchAllPages(cursor => getUserRecipesPage(username, cursor, LIST_PAGE_SIZE));
   } catch (error) {
     console.error('Error fetching user recipes:', error);
     throw error;
   }
 };
 
-export const getSavedRecipes = async (token) => {
+export const getSavedRecipesPage = async (token, cursor = null, limit = null) => {
   if (!token) {
     throw new Error('No authentication token provided');
   }
-  const response = await fetch(`${API_BASE_URL}/users/saved-recipes`, {
+  const response = await fetch(withCursor(`${API_BASE_URL}/users/saved-recipes`, cursor, limit), {
     method: 'GET',
     headers: {
       'Authorization': `Bearer ${token}`,
@@ -649,7 +672,11 @@ export const getSavedRecipes = async (token) => {
     credentials: 'include',
     mode: 'cors'
   });
-  return handleResponse(response);
+  return toPage(await handleResponse(response));
+};
+
+export const getSavedRecipes = async (token) => {
+  return fetchAllPages(cursor => getSavedRecipesPage(token, cursor, LIST_PAGE_SIZE));
 };
 
 // Check if a recipe is saved by the current user
@@ -862,36 +889,18 @@ export const deleteRecipeAdmin = async (recipeId, token) => {
 };
 
 // Admin-specific recipe services
-export const getAdminRecipes = async (token) => {
-  const response = await fetch(`${API_BASE_URL}/admin/recipes`, {
+export const getAdminRecipesPage = async (token, cursor = null, limit = null) => {
+  const response = await fetch(withCursor(`${API_BASE_URL}/admin/recipes`, cursor, limit), {
     headers: {
       'Authorization': `Bearer ${token}`,
       'Content-Type': 'application/json'
     }
   });
-  const result = await handleResponse(response);
-  
-  // Handle different response formats
-  if (Array.isArray(result)) {
-    return result;
-  } else if (result && typeof result === 'object') {
-    if (result.data && Array.isArray(result.data)) {
-      return result.data;
-    } else if (result.recipes && Array.isArray(result.recipes)) {
-      return result.recipes;
-    } else {
-      // Convert object with numeric keys to array if needed
-      const recipeArray = Object.keys(result)
-        .filter(key => !isNaN(key))
-        .map(key => result[key]);
-      if (recipeArray.length > 0) {
-        return recipeArray;
-      }
-    }
-  }
-  
-  console.warn('Unexpected admin recipes response format:', result);
-  return [];
+  return toPage(await handleResponse(response));
+};
+
+export const getAdminRecipes = async (token) => {
+  return fetchAllPages(cursor => getAdminRecipesPage(token, cursor, LIST_PAGE_SIZE));
 };
 
 export const deleteUserAdmin = async (userId, token) => {